@@ -0,0 +1,275 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable navigable map whose keys are an array set and whose values are stored parallel to the key storage,
+ * so a lookup is one search of the keys. Views of the map are views of its key set over the same values.
+ * Subclasses provide the values and creation of views.
+ * <p>
+ * Entries are created on demand unless the map is made by {@link #withEntries()}, then they are created once
+ * in an array parallel to the key storage and shared with views.
+ */
+abstract class AbstractArrayMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+    final AbstractArraySet<K> keys;
+    final Entry<K, V>[] entries;
+
+    AbstractArrayMap(AbstractArraySet<K> keys, Entry<K, V>[] entries) {
+        this.keys = keys;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the value at the position of the key storage.
+     */
+    abstract V value(int pos);
+
+    /**
+     * Creates a map over the keys, which are a view of the same key storage.
+     */
+    abstract AbstractArrayMap<K, V> view(AbstractArraySet<K> keys);
+
+    /**
+     * Returns a map of the same mappings whose navigation methods and entry set return entries created once,
+     * at the cost of an entry per key of the storage.
+     */
+    public abstract AbstractArrayMap<K, V> withEntries();
+
+    /**
+     * Returns the entries of the first <tt>length</tt> positions of the storage, creating them if there are none.
+     */
+    @SuppressWarnings("unchecked")
+    final Entry<K, V>[] entries(int length) {
+        if (entries != null) {
+            return entries;
+        }
+        Entry<K, V>[] res = (Entry<K, V>[]) new Entry<?, ?>[length];
+        for (int pos = 0; pos < length; pos++) {
+            res[pos] = new SimpleImmutableEntry<>(keys.element(pos), value(pos));
+        }
+        return res;
+    }
+
+    private AbstractArrayMap<K, V> subMap(NavigableSet<K> keys) {
+        return view((AbstractArraySet<K>) keys);
+    }
+
+    private Entry<K, V> entry(int pos) {
+        if (pos < 0) {
+            return null;
+        }
+        return entries != null ? entries[pos] : new SimpleImmutableEntry<>(keys.element(pos), value(pos));
+    }
+
+    private K key(int pos) {
+        return pos < 0 ? null : keys.element(pos);
+    }
+
+    @Override
+    public V get(Object key) {
+        int found = keys.search(key);
+        return found >= 0 ? value(found) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return keys.contains(key);
+    }
+
+    @Override
+    public int size() {
+        return keys.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return entry(keys.lower(keys.search(key)));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return key(keys.lower(keys.search(key)));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return entry(keys.floor(keys.search(key)));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return key(keys.floor(keys.search(key)));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return entry(keys.ceiling(keys.search(key)));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return key(keys.ceiling(keys.search(key)));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return entry(keys.higher(keys.search(key)));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return key(keys.higher(keys.search(key)));
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return keys.isEmpty() ? null : entry(keys.firstPos());
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return keys.isEmpty() ? null : entry(keys.lastPos());
+    }
+
+    @Override
+    public K firstKey() {
+        return keys.first();
+    }
+
+    @Override
+    public K lastKey() {
+        return keys.last();
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException("ArrayMap is not mutable");
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException("ArrayMap is not mutable");
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return keys.comparator();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return keys;
+    }
+
+    @Override
+    public NavigableSet<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return keys.descendingSet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new PositionIterator<V>() {
+                    @Override
+                    V get(int pos) {
+                        return value(pos);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new PositionIterator<Entry<K, V>>() {
+                    @Override
+                    Entry<K, V> get(int pos) {
+                        return entry(pos);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        };
+    }
+
+    /**
+     * Iterator over positions of the keys in this map's order.
+     */
+    private abstract class PositionIterator<T> implements Iterator<T> {
+        private int index;
+
+        abstract T get(int pos);
+
+        @Override
+        public boolean hasNext() {
+            return index < keys.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return get(keys.position(index++));
+        }
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return subMap(keys.descendingSet());
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return subMap(keys.subSet(fromKey, fromInclusive, toKey, toInclusive));
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return subMap(keys.headSet(toKey, inclusive));
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return subMap(keys.tailSet(fromKey, inclusive));
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+}
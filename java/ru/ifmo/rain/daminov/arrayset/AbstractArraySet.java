@@ -0,0 +1,269 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable navigable set over the range <tt>[from, to)</tt> of sorted storage, possibly viewed in reverse.
+ * Subclasses provide the storage: positional access, search and creation of views.
+ * All positions are absolute positions in the storage, which is always sorted ascending.
+ */
+abstract class AbstractArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    final int from;
+    final int to;
+    final boolean reversed;
+
+    AbstractArraySet(int from, int to, boolean reversed) {
+        this.from = from;
+        this.to = to;
+        this.reversed = reversed;
+    }
+
+    /**
+     * Returns the element at the position of the storage.
+     */
+    abstract E element(int pos);
+
+    /**
+     * Searches <tt>[from, to)</tt> of the storage like {@link Arrays#binarySearch(Object[], int, int, Object)}.
+     */
+    abstract int search(Object x);
+
+    /**
+     * Creates a set over <tt>[from, to)</tt> of the same storage.
+     */
+    abstract AbstractArraySet<E> view(int from, int to, boolean reversed);
+
+    /**
+     * Returns the comparator the storage is sorted by, <tt>null</tt> for natural ordering.
+     */
+    abstract Comparator<? super E> storageComparator();
+
+    /**
+     * Restricts the result of a search over the whole storage to <tt>[from, to)</tt>.
+     */
+    final int clamp(int found) {
+        int pos = found >= 0 ? found : -found - 1;
+        if (pos < from) {
+            return -from - 1;
+        }
+        if (pos > to || found >= 0 && pos == to) {
+            return -to - 1;
+        }
+        return found;
+    }
+
+    private int inRange(int pos) {
+        return from <= pos && pos < to ? pos : -1;
+    }
+
+    private static int lowerPos(int found) {
+        return found >= 0 ? found - 1 : -found - 2;
+    }
+
+    private static int floorPos(int found) {
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private static int ceilingPos(int found) {
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private static int higherPos(int found) {
+        return found >= 0 ? found + 1 : -found - 1;
+    }
+
+    /**
+     * Converts the result of {@link #search} to the position of the greatest element less than the key
+     * in this set's order, or -1.
+     */
+    final int lower(int found) {
+        return inRange(reversed ? higherPos(found) : lowerPos(found));
+    }
+
+    final int floor(int found) {
+        return inRange(reversed ? ceilingPos(found) : floorPos(found));
+    }
+
+    final int ceiling(int found) {
+        return inRange(reversed ? floorPos(found) : ceilingPos(found));
+    }
+
+    final int higher(int found) {
+        return inRange(reversed ? lowerPos(found) : higherPos(found));
+    }
+
+    /**
+     * Position of the first element in this set's order; the set must not be empty.
+     */
+    final int firstPos() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return reversed ? to - 1 : from;
+    }
+
+    final int lastPos() {
+        if (from == to) {
+            throw new NoSuchElementException();
+        }
+        return reversed ? from : to - 1;
+    }
+
+    /**
+     * Position of the element with the index in this set's order.
+     */
+    final int position(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        return reversed ? to - 1 - index : from + index;
+    }
+
+    private E elementOrNull(int pos) {
+        return pos < 0 ? null : element(pos);
+    }
+
+    @Override
+    public E lower(E x) {
+        return elementOrNull(lower(search(x)));
+    }
+
+    @Override
+    public E floor(E x) {
+        return elementOrNull(floor(search(x)));
+    }
+
+    @Override
+    public E ceiling(E x) {
+        return elementOrNull(ceiling(search(x)));
+    }
+
+    @Override
+    public E higher(E x) {
+        return elementOrNull(higher(search(x)));
+    }
+
+    @Override
+    public E first() {
+        return element(firstPos());
+    }
+
+    @Override
+    public E last() {
+        return element(lastPos());
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException("ArraySet is not mutable");
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException("ArraySet is not mutable");
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @Override
+    public boolean contains(Object x) {
+        return search(x) >= 0;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        Comparator<? super E> comparator = storageComparator();
+        return reversed ? Collections.reverseOrder(comparator) : comparator;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return element(position(index++));
+            }
+        };
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return view(from, to, !reversed);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    /**
+     * Returns the view of the storage range between the bounds in storage order, <tt>null</tt> bounds are open.
+     */
+    private AbstractArraySet<E> range(Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+        int l = from;
+        int r = to;
+        if (low != null) {
+            int found = search(low);
+            l = Math.max(from, lowInclusive ? ceilingPos(found) : higherPos(found));
+        }
+        if (high != null) {
+            int found = search(high);
+            r = Math.min(to, (highInclusive ? floorPos(found) : lowerPos(found)) + 1);
+        }
+        return l < r ? view(l, r, reversed) : view(l, l, reversed);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        Objects.requireNonNull(fromElement);
+        Objects.requireNonNull(toElement);
+        return reversed
+                ? range(toElement, toInclusive, fromElement, fromInclusive)
+                : range(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        Objects.requireNonNull(toElement);
+        return reversed ? range(toElement, inclusive, null, false) : range(null, false, toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        Objects.requireNonNull(fromElement);
+        return reversed ? range(null, false, fromElement, inclusive) : range(fromElement, inclusive, null, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E toElement) {
+        return tailSet(toElement, true);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable navigable map with keys in an {@link ArraySet} and values in a parallel array.
+ * Entries returned by navigation methods do not refer to the map, they are created on demand
+ * unless the map is made by {@link #withEntries()}.
+ */
+public class ArrayMap<K, V> extends AbstractArrayMap<K, V> {
+    private final V[] values;
+
+    public ArrayMap() {
+        this(Collections.emptyMap(), null);
+    }
+
+    public ArrayMap(Map<? extends K, ? extends V> other) {
+        this(other, null);
+    }
+
+    public ArrayMap(Map<? extends K, ? extends V> other, Comparator<? super K> comparator) {
+        this(other, comparator, Layout.SORTED);
+    }
+
+    /**
+     * Creates a map whose keys are searched with the layout. Entries already sorted by the comparator,
+     * such as those of a {@link SortedMap} with the same order, are taken in linear time.
+     */
+    public ArrayMap(Map<? extends K, ? extends V> other, Comparator<? super K> comparator, Layout layout) {
+        this(sortedUnique(other, comparator), comparator, layout);
+    }
+
+    private ArrayMap(Entry<K, V>[] entries, Comparator<? super K> comparator, Layout layout) {
+        this(new ArraySet<>(keys(entries), comparator, layout), values(entries), null);
+    }
+
+    private ArrayMap(ArraySet<K> keys, V[] values, Entry<K, V>[] entries) {
+        super(keys, entries);
+        this.values = values;
+    }
+
+    /**
+     * Sorts the entries by key unless they are already sorted. Of equal keys the first one is kept
+     * with the last value, as {@link TreeMap#putAll} does.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Entry<K, V>[] sortedUnique(Map<? extends K, ? extends V> other, Comparator<? super K> comparator) {
+        Entry<K, V>[] entries = (Entry<K, V>[]) other.entrySet().toArray(new Entry<?, ?>[0]);
+        Comparator<? super K> order = comparator == null ? (Comparator<? super K>) Comparator.naturalOrder() : comparator;
+        for (int i = 1; i < entries.length; i++) {
+            if (order.compare(entries[i - 1].getKey(), entries[i].getKey()) > 0) {
+                Arrays.sort(entries, (a, b) -> order.compare(a.getKey(), b.getKey()));
+                break;
+            }
+        }
+        int size = 0;
+        for (int i = 0; i < entries.length; i++) {
+            if (size != 0 && order.compare(entries[size - 1].getKey(), entries[i].getKey()) == 0) {
+                entries[size - 1] = new SimpleImmutableEntry<>(entries[size - 1].getKey(), entries[i].getValue());
+            } else {
+                entries[size++] = entries[i];
+            }
+        }
+        return size == entries.length ? entries : Arrays.copyOf(entries, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> K[] keys(Entry<K, V>[] entries) {
+        K[] res = (K[]) new Object[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            res[i] = entries[i].getKey();
+        }
+        return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> V[] values(Entry<K, V>[] entries) {
+        V[] res = (V[]) new Object[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            res[i] = entries[i].getValue();
+        }
+        return res;
+    }
+
+    @Override
+    V value(int pos) {
+        return values[pos];
+    }
+
+    @Override
+    ArrayMap<K, V> view(AbstractArraySet<K> keys) {
+        return new ArrayMap<>((ArraySet<K>) keys, values, entries);
+    }
+
+    @Override
+    public ArrayMap<K, V> withEntries() {
+        return entries != null ? this : new ArrayMap<>(navigableKeySet(), values, entries(values.length));
+    }
+
+    @Override
+    public ArraySet<K> navigableKeySet() {
+        return (ArraySet<K>) keys;
+    }
+}
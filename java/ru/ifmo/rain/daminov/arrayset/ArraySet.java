@@ -1,181 +1,468 @@
 package ru.ifmo.rain.daminov.arrayset;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.channels.FileChannel;
 import java.util.*;
-
-import static java.util.Collections.binarySearch;
-
-public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
-    private List<E> data;
-    private Comparator<? super E> comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable navigable set stored in a sorted array. Every view, however it is chained,
+ * is the same array with a range and a direction.
+ */
+public class ArraySet<E> extends AbstractArraySet<E> {
+    /**
+     * Ratio of set sizes from which merges skip runs of the larger set by galloping.
+     */
+    private static final int GALLOP_RATIO = 8;
+    /**
+     * Size from which parallel building is used when requested.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private final E[] data;
+    private final Comparator<? super E> comparator;
+    private final Object[][] levels;
 
     public ArraySet(ArraySet<E> other) {
-        this(other.data, other.comparator);
+        this(other, other.from, other.to, other.reversed);
     }
 
     public ArraySet() {
         this(Collections.emptyList(), null);
     }
 
-    private ArraySet(List<E> other, Comparator<? super E> comparator) {
-        data = other;
-        this.comparator = comparator;
-    }
-
     public ArraySet(Collection<? extends E> other) {
         this(other, null);
     }
 
     public ArraySet(Collection<? extends E> other, Comparator<? super E> comparator) {
+        this(other, comparator, Layout.SORTED);
+    }
+
+    /**
+     * Creates a set searched with the layout, views of the set share it.
+     */
+    public ArraySet(Collection<? extends E> other, Comparator<? super E> comparator, Layout layout) {
+        this(sortedUnique(other, comparator), comparator, layout);
+    }
+
+    /**
+     * Creates a set over sorted distinct elements without copying them.
+     */
+    ArraySet(E[] data, Comparator<? super E> comparator, Layout layout) {
+        super(0, data.length, false);
+        this.data = data;
         this.comparator = comparator;
-        Set<E> set = new TreeSet<>(comparator);
-        set.addAll(other);
-        data = new ArrayList<>(set);
+        levels = layout == Layout.BTREE ? BTreeIndex.levels(data) : null;
     }
 
-    private int helpBinSearch(E x, int posit, int negat) {
-        int pos = binarySearch(data, x, comparator);
-        return (pos >= 0) ? (pos + posit) : (-pos - 1 + negat);
+    private ArraySet(ArraySet<E> other, int from, int to, boolean reversed) {
+        super(from, to, reversed);
+        data = other.data;
+        comparator = other.comparator;
+        levels = other.levels;
     }
 
-    private E getValue(int pos, boolean thrw) {
-        if (0 <= pos && pos < data.size()) {
-            return data.get(pos);
-        } else {
-            if (!thrw) {
-                return null;
-            } else {
-                throw new NoSuchElementException();
+    /**
+     * Sorts the elements unless they are already sorted and keeps the first of equal ones, as a {@link TreeSet} does.
+     * Sorted input takes one linear pass.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> E[] sortedUnique(Collection<? extends E> other, Comparator<? super E> comparator) {
+        return sortedUnique((E[]) other.toArray(), comparator, false);
+    }
+
+    /**
+     * Sorts the elements in place unless they are already sorted and returns the first of equal ones.
+     * In parallel, large arrays are checked, sorted and compacted by the tasks of the common pool.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E[] sortedUnique(E[] elements, Comparator<? super E> comparator, boolean parallel) {
+        Comparator<? super E> order = comparator == null ? (Comparator<? super E>) Comparator.naturalOrder() : comparator;
+        if (elements.length > 0) {
+            // type (and null) check as in TreeMap.put, since a single element is never compared otherwise
+            order.compare(elements[0], elements[0]);
+        }
+        if (parallel && elements.length >= PARALLEL_THRESHOLD) {
+            return parallelSortedUnique(elements, order);
+        }
+        for (int i = 1; i < elements.length; i++) {
+            if (order.compare(elements[i - 1], elements[i]) > 0) {
+                Arrays.sort(elements, order);
+                break;
             }
         }
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (size == 0 || order.compare(elements[size - 1], elements[i]) != 0) {
+                elements[size++] = elements[i];
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
     }
 
-    @Override
-    public E lower(E x) {
-        return getValue(helpBinSearch(x, -1, -1), false);
+    /**
+     * Keeps the elements that differ from their predecessors: every chunk counts its elements to keep,
+     * and then copies them to the offset given by the counts of the preceding chunks.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E[] parallelSortedUnique(E[] elements, Comparator<? super E> order) {
+        int n = elements.length;
+        if (IntStream.range(1, n).parallel().anyMatch(i -> order.compare(elements[i - 1], elements[i]) > 0)) {
+            int granularity = Math.max(PARALLEL_THRESHOLD / 8, n / (4 * ForkJoinPool.getCommonPoolParallelism()));
+            ForkJoinPool.commonPool().invoke(new SortTask<>(elements, elements.clone(), 0, n, order, granularity));
+        }
+        int chunks = Math.min(n, 4 * ForkJoinPool.getCommonPoolParallelism());
+        int chunk = (n + chunks - 1) / chunks;
+        IntPredicate kept = i -> i == 0 || order.compare(elements[i - 1], elements[i]) != 0;
+        int[] offsets = new int[chunks + 1];
+        IntStream.range(0, chunks).parallel().forEach(c ->
+                offsets[c + 1] = (int) IntStream.range(c * chunk, Math.min(n, (c + 1) * chunk)).filter(kept).count());
+        for (int c = 0; c < chunks; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        if (offsets[chunks] == n) {
+            return elements;
+        }
+        E[] res = (E[]) Array.newInstance(elements.getClass().getComponentType(), offsets[chunks]);
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int size = offsets[c];
+            for (int i = c * chunk; i < Math.min(n, (c + 1) * chunk); i++) {
+                if (kept.test(i)) {
+                    res[size++] = elements[i];
+                }
+            }
+        });
+        return res;
     }
 
-    @Override
-    public E floor(E x) {
-        return getValue(helpBinSearch(x, 0, -1), false);
-    }
+    /**
+     * Stable merge sort of a range: short ranges are sorted by {@link Arrays#sort(Object[], int, int, Comparator)},
+     * longer ones are split in halves sorted in parallel and then merged.
+     * Unlike {@link Arrays#parallelSort(Object[], Comparator)} it keeps equal elements in order, so that the first
+     * of them is the one kept.
+     */
+    private static final class SortTask<E> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final E[] elements;
+        private final E[] buffer;
+        private final int from;
+        private final int to;
+        private final Comparator<? super E> order;
+        private final int granularity;
+
+        SortTask(E[] elements, E[] buffer, int from, int to, Comparator<? super E> order, int granularity) {
+            this.elements = elements;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.order = order;
+            this.granularity = granularity;
+        }
 
-    @Override
-    public E ceiling(E x) {
-        return getValue(helpBinSearch(x, 0, 0), false);
+        @Override
+        protected void compute() {
+            if (to - from <= granularity) {
+                Arrays.sort(elements, from, to, order);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask<>(elements, buffer, from, mid, order, granularity),
+                    new SortTask<>(elements, buffer, mid, to, order, granularity));
+            if (order.compare(elements[mid - 1], elements[mid]) <= 0) {
+                return;
+            }
+            System.arraycopy(elements, from, buffer, from, mid - from);
+            int i = from;
+            int j = mid;
+            int k = from;
+            while (i < mid && j < to) {
+                elements[k++] = order.compare(buffer[i], elements[j]) <= 0 ? buffer[i++] : elements[j++];
+            }
+            System.arraycopy(buffer, i, elements, k, mid - i);
+        }
     }
 
-    @Override
-    public E higher(E x) {
-        return getValue(helpBinSearch(x, 1, 0), false);
+    /**
+     * Collects elements and builds an {@link ArraySet} of them. Parallel building sorts and removes duplicates
+     * of large inputs with the common fork-join pool, the result is the same as of sequential building.
+     */
+    public static class Builder<E> {
+        private final List<E> elements = new ArrayList<>();
+        private Comparator<? super E> comparator;
+        private Layout layout = Layout.SORTED;
+        private boolean parallel;
+
+        public Builder<E> comparator(Comparator<? super E> comparator) {
+            this.comparator = comparator;
+            return this;
+        }
+
+        public Builder<E> layout(Layout layout) {
+            this.layout = Objects.requireNonNull(layout);
+            return this;
+        }
+
+        public Builder<E> parallel(boolean parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        public Builder<E> add(E element) {
+            elements.add(Objects.requireNonNull(element));
+            return this;
+        }
+
+        /**
+         * Adds the elements, none of them if some is <tt>null</tt>.
+         */
+        public Builder<E> addAll(Collection<? extends E> other) {
+            for (E element : other) {
+                Objects.requireNonNull(element);
+            }
+            elements.addAll(other);
+            return this;
+        }
+
+        /**
+         * Builds a set of the elements added so far, the builder can be used further.
+         */
+        @SuppressWarnings("unchecked")
+        public ArraySet<E> build() {
+            return new ArraySet<>(sortedUnique((E[]) elements.toArray(), comparator, parallel), comparator, layout);
+        }
     }
 
     @Override
-    public E pollFirst() {
-        throw new UnsupportedOperationException("ArraySet is noy mutable");
+    E element(int pos) {
+        return data[pos];
     }
 
     @Override
-    public E pollLast() {
-        throw new UnsupportedOperationException("ArraySet is noy mutable");
+    @SuppressWarnings("unchecked")
+    int search(Object x) {
+        return levels == null
+                ? Arrays.binarySearch(data, from, to, (E) x, comparator)
+                : clamp(BTreeIndex.search(data, levels, (E) x, comparator));
     }
 
     @Override
-    public int size() {
-        return data.size();
+    ArraySet<E> view(int from, int to, boolean reversed) {
+        return new ArraySet<>(this, from, to, reversed);
     }
 
-
     @Override
-    public boolean contains(Object x) {
-        return binarySearch(data, (E) x, comparator) >= 0;
+    Comparator<? super E> storageComparator() {
+        return comparator;
     }
 
     @Override
     public Iterator<E> iterator() {
-        return Collections.unmodifiableList(data).iterator();
+        return new Iterator<E>() {
+            private final int step = reversed ? -1 : 1;
+            private final int end = reversed ? from - 1 : to;
+            private int pos = reversed ? to - 1 : from;
+
+            @Override
+            public boolean hasNext() {
+                return pos != end;
+            }
+
+            @Override
+            public E next() {
+                if (pos == end) {
+                    throw new NoSuchElementException();
+                }
+                E res = data[pos];
+                pos += step;
+                return res;
+            }
+        };
     }
 
     @Override
-    public NavigableSet<E> descendingSet() {
-        return new ArraySet<>(new ReversedArrayList<>(data), Collections.reverseOrder(comparator));
+    public ArraySet<E> descendingSet() {
+        return view(from, to, !reversed);
     }
 
-    private class ReversedArrayList<T> extends AbstractList<T> implements RandomAccess {
-        private List<T> data;
-        private boolean isReversed;
-
-        public ReversedArrayList(List<T> other) {
-            if (other instanceof ReversedArrayList) {
-                ReversedArrayList<T> tmp = (ReversedArrayList<T>) other;
-                data = tmp.data;
-                isReversed = !tmp.isReversed;
-            } else {
-                data = other;
-                isReversed = true;
-            }
-        }
-
-        @Override
-        public T get(int i) {
-            return (!isReversed) ? data.get(i) : data.get(size() - i - 1);
-        }
-
-        @Override
-        public int size() {
-            return data.size();
-        }
+    @Override
+    public ArraySet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return (ArraySet<E>) super.subSet(fromElement, fromInclusive, toElement, toInclusive);
     }
 
     @Override
-    public Iterator<E> descendingIterator() {
-        return (new ReversedArrayList<>(data)).iterator();
+    public ArraySet<E> headSet(E toElement, boolean inclusive) {
+        return (ArraySet<E>) super.headSet(toElement, inclusive);
     }
 
     @Override
-    public NavigableSet<E> subSet(E a, boolean b, E a1, boolean b1) {
-        int l = helpBinSearch(a, b ? 0 : 1, 0);
-        int r = helpBinSearch(a1, b1 ? 0 : -1, -1);
-        return (l > r) ? Collections.emptyNavigableSet() : new ArraySet<>(data.subList(l, r + 1), comparator);
+    public ArraySet<E> tailSet(E fromElement, boolean inclusive) {
+        return (ArraySet<E>) super.tailSet(fromElement, inclusive);
     }
 
     @Override
-    public NavigableSet<E> headSet(E x, boolean b) {
-        return data.isEmpty() ? Collections.emptyNavigableSet() : subSet(data.get(0), true, x, b);
+    public ArraySet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
     }
 
     @Override
-    public NavigableSet<E> tailSet(E x, boolean b) {
-        return data.isEmpty() ? Collections.emptyNavigableSet() : subSet(x, b, data.get(size() - 1), true);
+    public ArraySet<E> headSet(E toElement) {
+        return headSet(toElement, false);
     }
 
     @Override
-    public Comparator<? super E> comparator() {
-        return comparator;
+    public ArraySet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
     }
 
-    @Override
-    public SortedSet<E> subSet(E e, E e1) {
-        return subSet(e, true, e1, false);
+    /**
+     * Writes a set of strings in the snapshot format, strings are front-coded. The stream is flushed but not closed.
+     *
+     * @throws IllegalArgumentException if some of the elements are not strings
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        SnapshotFormat.write(out, data, from, to, reversed);
     }
 
-    @Override
-    public SortedSet<E> headSet(E e) {
-        return headSet(e, false);
+    /**
+     * Reads a snapshot of strings in natural order written by {@link #writeTo} from the position of the channel,
+     * which is then moved past it.
+     */
+    public static ArraySet<String> readFrom(FileChannel channel) throws IOException {
+        return readFrom(channel, null, Layout.SORTED);
     }
 
-    @Override
-    public SortedSet<E> tailSet(E e) {
-        return tailSet(e, true);
+    /**
+     * Reads a snapshot of a set ordered by the comparator. The order is not checked.
+     */
+    public static ArraySet<String> readFrom(FileChannel channel, Comparator<? super String> comparator, Layout layout) throws IOException {
+        return SnapshotFormat.readStrings(channel, comparator, layout);
     }
 
-    @Override
-    public E first() {
-        return getValue(0, true);
+    /**
+     * Returns the element with the index in this set's order, the index is not checked.
+     */
+    private E get(int index) {
+        return data[reversed ? to - 1 - index : from + index];
     }
 
-    @Override
-    public E last() {
-        return getValue(data.size() - 1, true);
+    private void copy(int fromIndex, int toIndex, Object[] target, int at) {
+        if (reversed) {
+            for (int i = fromIndex; i < toIndex; i++) {
+                target[at++] = get(i);
+            }
+        } else {
+            System.arraycopy(data, from + fromIndex, target, at, toIndex - fromIndex);
+        }
+    }
+
+    /**
+     * Returns the first index in <tt>[lo, hi)</tt> whose element is not less than the key,
+     * probing indices <tt>lo</tt>, <tt>lo + 1</tt>, <tt>lo + 3</tt>, ... before a binary search.
+     */
+    private int gallop(int lo, int hi, E key, Comparator<? super E> order) {
+        int step = 1;
+        int prev = lo;
+        int probe = lo;
+        while (probe < hi && order.compare(get(probe), key) < 0) {
+            prev = probe + 1;
+            probe = lo + (step <<= 1) - 1;
+        }
+        hi = Math.min(probe, hi);
+        while (prev < hi) {
+            int mid = (prev + hi) >>> 1;
+            if (order.compare(get(mid), key) < 0) {
+                prev = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return prev;
+    }
+
+    /**
+     * Merges two sets of the same order keeping elements found only in <tt>a</tt>, only in <tt>b</tt>, or in both.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> ArraySet<E> merge(ArraySet<E> a, ArraySet<E> b, boolean onlyA, boolean onlyB, boolean both) {
+        Comparator<? super E> comparator = a.comparator();
+        if (!Objects.equals(comparator, b.comparator())) {
+            throw new IllegalArgumentException("Sets have different orders");
+        }
+        Comparator<? super E> order = comparator == null ? (Comparator<? super E>) Comparator.naturalOrder() : comparator;
+        int n = a.size();
+        int m = b.size();
+        boolean gallop = Math.max(n, m) >= GALLOP_RATIO * Math.min(n, m);
+        Object[] res = new Object[(onlyA ? n : 0) + (onlyB ? m : 0) + (both && !onlyA && !onlyB ? Math.min(n, m) : 0)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < n && j < m) {
+            E x = a.get(i);
+            E y = b.get(j);
+            int cmp = order.compare(x, y);
+            if (cmp < 0) {
+                int next = gallop ? a.gallop(i + 1, n, y, order) : i + 1;
+                if (onlyA) {
+                    a.copy(i, next, res, size);
+                    size += next - i;
+                }
+                i = next;
+            } else if (cmp > 0) {
+                int next = gallop ? b.gallop(j + 1, m, x, order) : j + 1;
+                if (onlyB) {
+                    b.copy(j, next, res, size);
+                    size += next - j;
+                }
+                j = next;
+            } else {
+                if (both) {
+                    res[size++] = x;
+                }
+                i++;
+                j++;
+            }
+        }
+        if (onlyA) {
+            a.copy(i, n, res, size);
+            size += n - i;
+        }
+        if (onlyB) {
+            b.copy(j, m, res, size);
+            size += m - j;
+        }
+        return new ArraySet<>((E[]) (size == res.length ? res : Arrays.copyOf(res, size)), comparator, Layout.SORTED);
+    }
+
+    /**
+     * Returns the elements of either set, taking equal elements from <tt>a</tt>.
+     * Both sets must have the same order, which is the order of the result.
+     * Runs in linear time, or close to <tt>O(k log(n / k))</tt> if one set is much smaller than the other.
+     *
+     * @throws IllegalArgumentException if comparators of the sets differ
+     */
+    public static <E> ArraySet<E> union(ArraySet<E> a, ArraySet<E> b) {
+        return merge(a, b, true, true, true);
     }
 
-}
\ No newline at end of file
+    public static <E> ArraySet<E> intersect(ArraySet<E> a, ArraySet<E> b) {
+        return merge(a, b, false, false, true);
+    }
+
+    /**
+     * Returns the elements of <tt>a</tt> absent from <tt>b</tt>.
+     */
+    public static <E> ArraySet<E> difference(ArraySet<E> a, ArraySet<E> b) {
+        return merge(a, b, true, false, false);
+    }
+
+    public static <E> ArraySet<E> symmetricDifference(ArraySet<E> a, ArraySet<E> b) {
+        return merge(a, b, true, true, false);
+    }
+}
@@ -0,0 +1,181 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmarks of set lookups by size and {@link Layout}: {@link ArraySet} with {@link Layout#SORTED} is the
+ * plain binary search path. Random probes hit about half of the time; every benchmark runs warmup
+ * iterations and then measured ones, and results are written as a JSON array.
+ * <p>
+ * Usage: <tt>ArraySetBenchmark result.json [--max-size n] [--probes n] [--warmup n] [--iterations n]</tt>.
+ */
+public class ArraySetBenchmark {
+    private static final int[] SIZES = {1 << 10, 1 << 14, 1 << 17, 1 << 20, 1 << 23};
+
+    private final int maxSize;
+    private final int probes;
+    private final int warmup;
+    private final int iterations;
+    private final List<String> results = new ArrayList<>();
+    /**
+     * Receives lookup results so that they are not optimized away.
+     */
+    private long sink;
+
+    private ArraySetBenchmark(int maxSize, int probes, int warmup, int iterations) {
+        this.maxSize = maxSize;
+        this.probes = probes;
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    public static void main(String[] args) {
+        if (args == null || args.length < 1 || args.length % 2 != 1 || args[0] == null) {
+            System.out.println("Usage: ArraySetBenchmark result.json [--max-size n] [--probes n] [--warmup n] [--iterations n]");
+            return;
+        }
+        int maxSize = 1 << 20;
+        int probes = 1 << 20;
+        int warmup = 3;
+        int iterations = 5;
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--max-size":
+                        maxSize = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--probes":
+                        probes = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--warmup":
+                        warmup = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--iterations":
+                        iterations = Integer.parseInt(args[i + 1]);
+                        break;
+                    default:
+                        System.out.println("Unknown option " + args[i]);
+                        return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number, " + e.getMessage());
+            return;
+        }
+        try {
+            ArraySetBenchmark benchmark = new ArraySetBenchmark(maxSize, probes, warmup, iterations);
+            benchmark.run();
+            benchmark.write(args[0]);
+        } catch (IOException e) {
+            System.out.println("Benchmark failed, " + e.getMessage());
+        } catch (InvalidPathException e) {
+            System.out.println("Invalid path, " + e.getMessage());
+        }
+    }
+
+    private interface Body {
+        /**
+         * Runs one iteration and returns the number of lookups.
+         */
+        long run();
+    }
+
+    private void run() {
+        for (int size : SIZES) {
+            if (size > maxSize) {
+                continue;
+            }
+            Random random = new Random(size);
+            long[] elements = new long[size];
+            List<Integer> boxed = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                elements[i] = 2L * i;
+                boxed.add(2 * i);
+            }
+            long[] keys = new long[probes];
+            Integer[] boxedKeys = new Integer[probes];
+            for (int i = 0; i < probes; i++) {
+                keys[i] = random.nextInt(2 * size);
+                boxedKeys[i] = (int) keys[i];
+            }
+            for (Layout layout : Layout.values()) {
+                String params = "layout=" + layout + ",size=" + size;
+
+                ArraySet<Integer> set = new ArraySet<>(boxed, null, layout);
+                measure("ArraySet.contains", params, () -> {
+                    long hits = 0;
+                    for (Integer key : boxedKeys) {
+                        hits += set.contains(key) ? 1 : 0;
+                    }
+                    sink += hits;
+                    return boxedKeys.length;
+                });
+                measure("ArraySet.floor", params, () -> {
+                    long sum = 0;
+                    for (Integer key : boxedKeys) {
+                        Integer floor = set.floor(key);
+                        sum += floor == null ? 0 : floor;
+                    }
+                    sink += sum;
+                    return boxedKeys.length;
+                });
+
+                LongArraySet longs = new LongArraySet(layout, elements);
+                measure("LongArraySet.contains", params, () -> {
+                    long hits = 0;
+                    for (long key : keys) {
+                        hits += longs.contains(key) ? 1 : 0;
+                    }
+                    sink += hits;
+                    return keys.length;
+                });
+                measure("LongArraySet.floor", params, () -> {
+                    long sum = 0;
+                    for (long key : keys) {
+                        sum += longs.floor(key, 0);
+                    }
+                    sink += sum;
+                    return keys.length;
+                });
+            }
+        }
+    }
+
+    private void measure(String name, String params, Body body) {
+        for (int i = 0; i < warmup; i++) {
+            body.run();
+        }
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            long units = body.run();
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            scores[i] = units / 1e6 / (elapsed / 1e9);
+        }
+        double mean = 0;
+        for (double score : scores) {
+            mean += score / scores.length;
+        }
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean) / Math.max(1, scores.length - 1);
+        }
+        String result = String.format(Locale.ROOT,
+                "{\"benchmark\":\"%s\",\"params\":\"%s\",\"unit\":\"Mops/s\",\"iterations\":%d,\"score\":%.3f,\"stddev\":%.3f}",
+                name, params, iterations, mean, Math.sqrt(variance));
+        System.out.println(result);
+        results.add(result);
+    }
+
+    private void write(String output) throws IOException {
+        Files.write(Paths.get(output), ("[\n  " + String.join(",\n  ", results) + "\n]\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,166 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Static B+-tree over sorted storage. Level <tt>h</tt> holds the first element of every node of level
+ * <tt>h - 1</tt>, the storage itself being level -1, up to a single root node.
+ * Searches return the same result as a binary search over the whole storage.
+ */
+final class BTreeIndex {
+    static final int INT_NODE = 16;
+    static final int LONG_NODE = 8;
+    static final int REFERENCE_NODE = 16;
+
+    private BTreeIndex() {
+    }
+
+    private static int parentLength(int length, int node) {
+        return length > node ? (length + node - 1) / node : 0;
+    }
+
+    static int[][] levels(int[] data) {
+        List<int[]> levels = new ArrayList<>();
+        int[] level = data;
+        for (int length; (length = parentLength(level.length, INT_NODE)) > 0; ) {
+            int[] parent = new int[length];
+            for (int i = 0; i < length; i++) {
+                parent[i] = level[i * INT_NODE];
+            }
+            levels.add(level = parent);
+        }
+        return levels.toArray(new int[0][]);
+    }
+
+    static long[][] levels(long[] data) {
+        List<long[]> levels = new ArrayList<>();
+        long[] level = data;
+        for (int length; (length = parentLength(level.length, LONG_NODE)) > 0; ) {
+            long[] parent = new long[length];
+            for (int i = 0; i < length; i++) {
+                parent[i] = level[i * LONG_NODE];
+            }
+            levels.add(level = parent);
+        }
+        return levels.toArray(new long[0][]);
+    }
+
+    static double[][] levels(double[] data) {
+        List<double[]> levels = new ArrayList<>();
+        double[] level = data;
+        for (int length; (length = parentLength(level.length, LONG_NODE)) > 0; ) {
+            double[] parent = new double[length];
+            for (int i = 0; i < length; i++) {
+                parent[i] = level[i * LONG_NODE];
+            }
+            levels.add(level = parent);
+        }
+        return levels.toArray(new double[0][]);
+    }
+
+    static Object[][] levels(Object[] data) {
+        List<Object[]> levels = new ArrayList<>();
+        Object[] level = data;
+        for (int length; (length = parentLength(level.length, REFERENCE_NODE)) > 0; ) {
+            Object[] parent = new Object[length];
+            for (int i = 0; i < length; i++) {
+                parent[i] = level[i * REFERENCE_NODE];
+            }
+            levels.add(level = parent);
+        }
+        return levels.toArray(new Object[0][]);
+    }
+
+    /**
+     * Converts the position of the last element not greater than the key into a binary search result.
+     */
+    private static int result(int floor, boolean found) {
+        return found ? floor : -floor - 2;
+    }
+
+    static int search(int[] data, int[][] levels, int x) {
+        int node = 0;
+        for (int h = levels.length - 1; h >= -1; h--) {
+            int[] level = h < 0 ? data : levels[h];
+            int start = node * INT_NODE;
+            int end = Math.min(start + INT_NODE, level.length);
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                count += level[i] <= x ? 1 : 0;
+            }
+            if (count == 0) {
+                return -1;
+            }
+            node = start + count - 1;
+        }
+        return result(node, data[node] == x);
+    }
+
+    static int search(long[] data, long[][] levels, long x) {
+        int node = 0;
+        for (int h = levels.length - 1; h >= -1; h--) {
+            long[] level = h < 0 ? data : levels[h];
+            int start = node * LONG_NODE;
+            int end = Math.min(start + LONG_NODE, level.length);
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                count += level[i] <= x ? 1 : 0;
+            }
+            if (count == 0) {
+                return -1;
+            }
+            node = start + count - 1;
+        }
+        return result(node, data[node] == x);
+    }
+
+    static int search(double[] data, double[][] levels, double x) {
+        int node = 0;
+        for (int h = levels.length - 1; h >= -1; h--) {
+            double[] level = h < 0 ? data : levels[h];
+            int start = node * LONG_NODE;
+            int end = Math.min(start + LONG_NODE, level.length);
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                count += Double.compare(level[i], x) <= 0 ? 1 : 0;
+            }
+            if (count == 0) {
+                return -1;
+            }
+            node = start + count - 1;
+        }
+        return result(node, Double.compare(data[node], x) == 0);
+    }
+
+    /**
+     * Searches references with a binary search inside every node, since each comparison dereferences an element.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> int search(E[] data, Object[][] levels, E x, Comparator<? super E> comparator) {
+        int node = 0;
+        for (int h = levels.length - 1; h >= -1; h--) {
+            int start = node * REFERENCE_NODE;
+            int lo = start;
+            Object[] level = h < 0 ? data : levels[h];
+            int hi = Math.min(start + REFERENCE_NODE, level.length);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                E element = (E) level[mid];
+                int cmp = comparator == null ? ((Comparable<? super E>) element).compareTo(x) : comparator.compare(element, x);
+                if (cmp <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (lo == start) {
+                return -1;
+            }
+            node = lo - 1;
+        }
+        E floor = data[node];
+        return result(node, (comparator == null ? ((Comparable<? super E>) floor).compareTo(x) : comparator.compare(floor, x)) == 0);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.util.Arrays;
+
+/**
+ * Binary search over sorted primitives with branch-free conditional moves for ranges that fit in cache,
+ * finishing the last cache line with a scalar scan that counts elements not greater than the key
+ * without branching; there is no vectorized path. On cached data the levels of a plain binary search
+ * are mostly mispredicted branches. Larger ranges
+ * keep the plain search, whose predicted branches let the CPU issue the next load before a cache miss
+ * is served, while a conditional move waits for each miss in turn.
+ * Results are the same as those of {@link Arrays#binarySearch(long[], int, int, long)}.
+ */
+final class BlockSearch {
+    /**
+     * Lengths of ranges of one megabyte, above them the plain search is faster.
+     */
+    private static final int INT_CACHED = 1 << 18;
+    private static final int LONG_CACHED = 1 << 17;
+
+    private BlockSearch() {
+    }
+
+    static int search(int[] data, int from, int to, int x) {
+        if (to - from > INT_CACHED) {
+            return Arrays.binarySearch(data, from, to, x);
+        }
+        int base = from;
+        int length = to - from;
+        while (length > BTreeIndex.INT_NODE) {
+            int half = length >>> 1;
+            base = data[base + half] <= x ? base + half : base;
+            length -= half;
+        }
+        int floor = base - 1;
+        for (int i = base; i < base + length; i++) {
+            floor += data[i] <= x ? 1 : 0;
+        }
+        return floor >= from && data[floor] == x ? floor : -floor - 2;
+    }
+
+    static int search(long[] data, int from, int to, long x) {
+        if (to - from > LONG_CACHED) {
+            return Arrays.binarySearch(data, from, to, x);
+        }
+        int base = from;
+        int length = to - from;
+        while (length > BTreeIndex.LONG_NODE) {
+            int half = length >>> 1;
+            base = data[base + half] <= x ? base + half : base;
+            length -= half;
+        }
+        int floor = base - 1;
+        for (int i = base; i < base + length; i++) {
+            floor += data[i] <= x ? 1 : 0;
+        }
+        return floor >= from && data[floor] == x ? floor : -floor - 2;
+    }
+
+    static int search(double[] data, int from, int to, double x) {
+        if (to - from > LONG_CACHED) {
+            return Arrays.binarySearch(data, from, to, x);
+        }
+        int base = from;
+        int length = to - from;
+        while (length > BTreeIndex.LONG_NODE) {
+            int half = length >>> 1;
+            base = Double.compare(data[base + half], x) <= 0 ? base + half : base;
+            length -= half;
+        }
+        int floor = base - 1;
+        for (int i = base; i < base + length; i++) {
+            floor += Double.compare(data[i], x) <= 0 ? 1 : 0;
+        }
+        return floor >= from && Double.compare(data[floor], x) == 0 ? floor : -floor - 2;
+    }
+}
@@ -0,0 +1,210 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Immutable navigable set of {@code double} values stored in a sorted primitive array.
+ * Besides the {@link java.util.NavigableSet} methods it offers overloads that neither box nor allocate.
+ * Lookups use the {@link Layout} chosen at construction, views share it.
+ * Values are ordered as by {@link Double#compare}: <tt>-0.0</tt> precedes <tt>0.0</tt> and all NaNs are one greatest element.
+ */
+public class DoubleArraySet extends AbstractArraySet<Double> {
+    private final double[] data;
+    private final double[][] levels;
+
+    public DoubleArraySet() {
+        this(new double[0], Layout.SORTED);
+    }
+
+    public DoubleArraySet(double... elements) {
+        this(Layout.SORTED, elements);
+    }
+
+    public DoubleArraySet(Layout layout, double... elements) {
+        this(sortedUnique(elements.clone()), layout);
+    }
+
+    public DoubleArraySet(Collection<? extends Double> other) {
+        this(other, Layout.SORTED);
+    }
+
+    public DoubleArraySet(Collection<? extends Double> other, Layout layout) {
+        this(sortedUnique(toArray(other)), layout);
+    }
+
+    /**
+     * Creates a set over sorted distinct elements without copying them.
+     */
+    DoubleArraySet(double[] data, Layout layout) {
+        super(0, data.length, false);
+        this.data = data;
+        levels = layout == Layout.BTREE ? BTreeIndex.levels(data) : null;
+    }
+
+    private DoubleArraySet(DoubleArraySet other, int from, int to, boolean reversed) {
+        super(from, to, reversed);
+        data = other.data;
+        levels = other.levels;
+    }
+
+    private static double[] toArray(Collection<? extends Double> other) {
+        double[] res = new double[other.size()];
+        int i = 0;
+        for (Double x : other) {
+            res[i++] = x;
+        }
+        return res;
+    }
+
+    private static double[] sortedUnique(double[] elements) {
+        for (int i = 1; i < elements.length; i++) {
+            if (Double.compare(elements[i - 1], elements[i]) > 0) {
+                Arrays.sort(elements);
+                break;
+            }
+        }
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (size == 0 || Double.compare(elements[i], elements[size - 1]) != 0) {
+                elements[size++] = elements[i];
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    Double element(int pos) {
+        return data[pos];
+    }
+
+    @Override
+    int search(Object x) {
+        return search((double) (Double) x);
+    }
+
+    private int search(double x) {
+        return levels == null ? BlockSearch.search(data, from, to, x) : clamp(BTreeIndex.search(data, levels, x));
+    }
+
+    @Override
+    DoubleArraySet view(int from, int to, boolean reversed) {
+        return new DoubleArraySet(this, from, to, reversed);
+    }
+
+    @Override
+    Comparator<? super Double> storageComparator() {
+        return null;
+    }
+
+    public boolean contains(double x) {
+        return search(x) >= 0;
+    }
+
+    /**
+     * Returns the greatest element less than <tt>x</tt> in this set's order, or <tt>absent</tt> if there is none.
+     */
+    public double lower(double x, double absent) {
+        int pos = lower(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public double floor(double x, double absent) {
+        int pos = floor(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public double ceiling(double x, double absent) {
+        int pos = ceiling(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public double higher(double x, double absent) {
+        int pos = higher(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public double firstDouble() {
+        return data[firstPos()];
+    }
+
+    public double lastDouble() {
+        return data[lastPos()];
+    }
+
+    /**
+     * Returns the element with the index in this set's order.
+     */
+    public double getDouble(int index) {
+        return data[position(index)];
+    }
+
+    public double[] toDoubleArray() {
+        double[] res = Arrays.copyOfRange(data, from, to);
+        if (reversed) {
+            for (int i = 0, j = res.length - 1; i < j; i++, j--) {
+                double tmp = res[i];
+                res[i] = res[j];
+                res[j] = tmp;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Writes the set in the snapshot format, elements are delta-encoded. The stream is flushed but not closed.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        SnapshotFormat.write(out, data, from, to, reversed);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo} from the position of the channel, which is then moved past it.
+     */
+    public static DoubleArraySet readFrom(FileChannel channel) throws IOException {
+        return readFrom(channel, Layout.SORTED);
+    }
+
+    public static DoubleArraySet readFrom(FileChannel channel, Layout layout) throws IOException {
+        return SnapshotFormat.readDoubles(channel, layout);
+    }
+
+    @Override
+    public DoubleArraySet descendingSet() {
+        return view(from, to, !reversed);
+    }
+
+    @Override
+    public DoubleArraySet subSet(Double fromElement, boolean fromInclusive, Double toElement, boolean toInclusive) {
+        return (DoubleArraySet) super.subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public DoubleArraySet headSet(Double toElement, boolean inclusive) {
+        return (DoubleArraySet) super.headSet(toElement, inclusive);
+    }
+
+    @Override
+    public DoubleArraySet tailSet(Double fromElement, boolean inclusive) {
+        return (DoubleArraySet) super.tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public DoubleArraySet subSet(Double fromElement, Double toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public DoubleArraySet headSet(Double toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public DoubleArraySet tailSet(Double fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
@@ -0,0 +1,209 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Immutable navigable set of {@code int} values stored in a sorted primitive array.
+ * Besides the {@link java.util.NavigableSet} methods it offers overloads that neither box nor allocate.
+ * Lookups use the {@link Layout} chosen at construction, views share it.
+ */
+public class IntArraySet extends AbstractArraySet<Integer> {
+    private final int[] data;
+    private final int[][] levels;
+
+    public IntArraySet() {
+        this(new int[0], Layout.SORTED);
+    }
+
+    public IntArraySet(int... elements) {
+        this(Layout.SORTED, elements);
+    }
+
+    public IntArraySet(Layout layout, int... elements) {
+        this(sortedUnique(elements.clone()), layout);
+    }
+
+    public IntArraySet(Collection<? extends Integer> other) {
+        this(other, Layout.SORTED);
+    }
+
+    public IntArraySet(Collection<? extends Integer> other, Layout layout) {
+        this(sortedUnique(toArray(other)), layout);
+    }
+
+    /**
+     * Creates a set over sorted distinct elements without copying them.
+     */
+    IntArraySet(int[] data, Layout layout) {
+        super(0, data.length, false);
+        this.data = data;
+        levels = layout == Layout.BTREE ? BTreeIndex.levels(data) : null;
+    }
+
+    private IntArraySet(IntArraySet other, int from, int to, boolean reversed) {
+        super(from, to, reversed);
+        data = other.data;
+        levels = other.levels;
+    }
+
+    private static int[] toArray(Collection<? extends Integer> other) {
+        int[] res = new int[other.size()];
+        int i = 0;
+        for (Integer x : other) {
+            res[i++] = x;
+        }
+        return res;
+    }
+
+    private static int[] sortedUnique(int[] elements) {
+        for (int i = 1; i < elements.length; i++) {
+            if (elements[i - 1] > elements[i]) {
+                Arrays.sort(elements);
+                break;
+            }
+        }
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (size == 0 || elements[i] != elements[size - 1]) {
+                elements[size++] = elements[i];
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    Integer element(int pos) {
+        return data[pos];
+    }
+
+    @Override
+    int search(Object x) {
+        return search((int) (Integer) x);
+    }
+
+    private int search(int x) {
+        return levels == null ? BlockSearch.search(data, from, to, x) : clamp(BTreeIndex.search(data, levels, x));
+    }
+
+    @Override
+    IntArraySet view(int from, int to, boolean reversed) {
+        return new IntArraySet(this, from, to, reversed);
+    }
+
+    @Override
+    Comparator<? super Integer> storageComparator() {
+        return null;
+    }
+
+    public boolean contains(int x) {
+        return search(x) >= 0;
+    }
+
+    /**
+     * Returns the greatest element less than <tt>x</tt> in this set's order, or <tt>absent</tt> if there is none.
+     */
+    public int lower(int x, int absent) {
+        int pos = lower(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public int floor(int x, int absent) {
+        int pos = floor(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public int ceiling(int x, int absent) {
+        int pos = ceiling(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public int higher(int x, int absent) {
+        int pos = higher(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public int firstInt() {
+        return data[firstPos()];
+    }
+
+    public int lastInt() {
+        return data[lastPos()];
+    }
+
+    /**
+     * Returns the element with the index in this set's order.
+     */
+    public int getInt(int index) {
+        return data[position(index)];
+    }
+
+    public int[] toIntArray() {
+        int[] res = Arrays.copyOfRange(data, from, to);
+        if (reversed) {
+            for (int i = 0, j = res.length - 1; i < j; i++, j--) {
+                int tmp = res[i];
+                res[i] = res[j];
+                res[j] = tmp;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Writes the set in the snapshot format, elements are delta-encoded. The stream is flushed but not closed.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        SnapshotFormat.write(out, data, from, to, reversed);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo} from the position of the channel, which is then moved past it.
+     */
+    public static IntArraySet readFrom(FileChannel channel) throws IOException {
+        return readFrom(channel, Layout.SORTED);
+    }
+
+    public static IntArraySet readFrom(FileChannel channel, Layout layout) throws IOException {
+        return SnapshotFormat.readInts(channel, layout);
+    }
+
+    @Override
+    public IntArraySet descendingSet() {
+        return view(from, to, !reversed);
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+        return (IntArraySet) super.subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement, boolean inclusive) {
+        return (IntArraySet) super.headSet(toElement, inclusive);
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement, boolean inclusive) {
+        return (IntArraySet) super.tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public IntArraySet subSet(Integer fromElement, Integer toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public IntArraySet headSet(Integer toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public IntArraySet tailSet(Integer fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
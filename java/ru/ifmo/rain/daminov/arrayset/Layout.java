@@ -0,0 +1,17 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+/**
+ * Search structure of an immutable array set, chosen at construction time.
+ */
+public enum Layout {
+    /**
+     * Binary search over the sorted elements.
+     */
+    SORTED,
+    /**
+     * Static B+-tree over the sorted elements with nodes of one 64-byte cache line: every level holds the first
+     * element of each node of the level below. A lookup reads one node per level, so it touches
+     * <tt>log<sub>B</sub>(n)</tt> cache lines instead of <tt>log<sub>2</sub>(n)</tt>.
+     */
+    BTREE
+}
@@ -0,0 +1,209 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Immutable navigable set of {@code long} values stored in a sorted primitive array.
+ * Besides the {@link java.util.NavigableSet} methods it offers overloads that neither box nor allocate.
+ * Lookups use the {@link Layout} chosen at construction, views share it.
+ */
+public class LongArraySet extends AbstractArraySet<Long> {
+    private final long[] data;
+    private final long[][] levels;
+
+    public LongArraySet() {
+        this(new long[0], Layout.SORTED);
+    }
+
+    public LongArraySet(long... elements) {
+        this(Layout.SORTED, elements);
+    }
+
+    public LongArraySet(Layout layout, long... elements) {
+        this(sortedUnique(elements.clone()), layout);
+    }
+
+    public LongArraySet(Collection<? extends Long> other) {
+        this(other, Layout.SORTED);
+    }
+
+    public LongArraySet(Collection<? extends Long> other, Layout layout) {
+        this(sortedUnique(toArray(other)), layout);
+    }
+
+    /**
+     * Creates a set over sorted distinct elements without copying them.
+     */
+    LongArraySet(long[] data, Layout layout) {
+        super(0, data.length, false);
+        this.data = data;
+        levels = layout == Layout.BTREE ? BTreeIndex.levels(data) : null;
+    }
+
+    private LongArraySet(LongArraySet other, int from, int to, boolean reversed) {
+        super(from, to, reversed);
+        data = other.data;
+        levels = other.levels;
+    }
+
+    private static long[] toArray(Collection<? extends Long> other) {
+        long[] res = new long[other.size()];
+        int i = 0;
+        for (Long x : other) {
+            res[i++] = x;
+        }
+        return res;
+    }
+
+    private static long[] sortedUnique(long[] elements) {
+        for (int i = 1; i < elements.length; i++) {
+            if (elements[i - 1] > elements[i]) {
+                Arrays.sort(elements);
+                break;
+            }
+        }
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (size == 0 || elements[i] != elements[size - 1]) {
+                elements[size++] = elements[i];
+            }
+        }
+        return size == elements.length ? elements : Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    Long element(int pos) {
+        return data[pos];
+    }
+
+    @Override
+    int search(Object x) {
+        return search((long) (Long) x);
+    }
+
+    int search(long x) {
+        return levels == null ? BlockSearch.search(data, from, to, x) : clamp(BTreeIndex.search(data, levels, x));
+    }
+
+    @Override
+    LongArraySet view(int from, int to, boolean reversed) {
+        return new LongArraySet(this, from, to, reversed);
+    }
+
+    @Override
+    Comparator<? super Long> storageComparator() {
+        return null;
+    }
+
+    public boolean contains(long x) {
+        return search(x) >= 0;
+    }
+
+    /**
+     * Returns the greatest element less than <tt>x</tt> in this set's order, or <tt>absent</tt> if there is none.
+     */
+    public long lower(long x, long absent) {
+        int pos = lower(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public long floor(long x, long absent) {
+        int pos = floor(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public long ceiling(long x, long absent) {
+        int pos = ceiling(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public long higher(long x, long absent) {
+        int pos = higher(search(x));
+        return pos < 0 ? absent : data[pos];
+    }
+
+    public long firstLong() {
+        return data[firstPos()];
+    }
+
+    public long lastLong() {
+        return data[lastPos()];
+    }
+
+    /**
+     * Returns the element with the index in this set's order.
+     */
+    public long getLong(int index) {
+        return data[position(index)];
+    }
+
+    public long[] toLongArray() {
+        long[] res = Arrays.copyOfRange(data, from, to);
+        if (reversed) {
+            for (int i = 0, j = res.length - 1; i < j; i++, j--) {
+                long tmp = res[i];
+                res[i] = res[j];
+                res[j] = tmp;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Writes the set in the snapshot format, elements are delta-encoded. The stream is flushed but not closed.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        SnapshotFormat.write(out, data, from, to, reversed);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo} from the position of the channel, which is then moved past it.
+     */
+    public static LongArraySet readFrom(FileChannel channel) throws IOException {
+        return readFrom(channel, Layout.SORTED);
+    }
+
+    public static LongArraySet readFrom(FileChannel channel, Layout layout) throws IOException {
+        return SnapshotFormat.readLongs(channel, layout);
+    }
+
+    @Override
+    public LongArraySet descendingSet() {
+        return view(from, to, !reversed);
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        return (LongArraySet) super.subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement, boolean inclusive) {
+        return (LongArraySet) super.headSet(toElement, inclusive);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement, boolean inclusive) {
+        return (LongArraySet) super.tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public LongArraySet subSet(Long fromElement, Long toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public LongArraySet headSet(Long toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public LongArraySet tailSet(Long fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
@@ -0,0 +1,207 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable navigable map from {@code long} to {@code int} with keys in a {@link LongArraySet}
+ * and values in a parallel primitive array.
+ * Besides the {@link java.util.NavigableMap} methods it offers overloads that neither box nor allocate.
+ */
+public class LongIntArrayMap extends AbstractArrayMap<Long, Integer> {
+    private final int[] values;
+
+    public LongIntArrayMap() {
+        this(new long[0], new int[0]);
+    }
+
+    public LongIntArrayMap(long[] keys, int[] values) {
+        this(keys, values, Layout.SORTED);
+    }
+
+    /**
+     * Creates a map of <tt>keys[i]</tt> to <tt>values[i]</tt>, of equal keys the last value is kept.
+     * Keys already sorted are taken in linear time.
+     *
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public LongIntArrayMap(long[] keys, int[] values, Layout layout) {
+        this(new Entries(checkLengths(keys, values).clone(), values.clone()), layout);
+    }
+
+    public LongIntArrayMap(Map<Long, Integer> other) {
+        this(other, Layout.SORTED);
+    }
+
+    public LongIntArrayMap(Map<Long, Integer> other, Layout layout) {
+        this(Entries.of(other), layout);
+    }
+
+    private LongIntArrayMap(Entries entries, Layout layout) {
+        this(new LongArraySet(entries.keys, layout), entries.values, null);
+    }
+
+    private LongIntArrayMap(LongArraySet keys, int[] values, Map.Entry<Long, Integer>[] entries) {
+        super(keys, entries);
+        this.values = values;
+    }
+
+    private static long[] checkLengths(long[] keys, int[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Keys and values have different lengths");
+        }
+        return keys;
+    }
+
+    /**
+     * Keys and values sorted by key without equal keys.
+     */
+    private static final class Entries {
+        private static final int RUN = 32;
+
+        final long[] keys;
+        final int[] values;
+
+        Entries(long[] keys, int[] values) {
+            for (int i = 1; i < keys.length; i++) {
+                if (keys[i - 1] > keys[i]) {
+                    sort(keys, values);
+                    break;
+                }
+            }
+            int size = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (size != 0 && keys[size - 1] == keys[i]) {
+                    values[size - 1] = values[i];
+                } else {
+                    keys[size] = keys[i];
+                    values[size++] = values[i];
+                }
+            }
+            this.keys = size == keys.length ? keys : Arrays.copyOf(keys, size);
+            this.values = size == values.length ? values : Arrays.copyOf(values, size);
+        }
+
+        /**
+         * Sorts the keys together with their values by a stable bottom-up merge sort over primitive arrays,
+         * starting from runs sorted by insertion, so that equal keys keep their order.
+         */
+        private static void sort(long[] keys, int[] values) {
+            int n = keys.length;
+            for (int from = 0; from < n; from += RUN) {
+                int to = Math.min(from + RUN, n);
+                for (int i = from + 1; i < to; i++) {
+                    long key = keys[i];
+                    int value = values[i];
+                    int j = i;
+                    for (; j > from && keys[j - 1] > key; j--) {
+                        keys[j] = keys[j - 1];
+                        values[j] = values[j - 1];
+                    }
+                    keys[j] = key;
+                    values[j] = value;
+                }
+            }
+            long[] sourceKeys = keys;
+            int[] sourceValues = values;
+            long[] targetKeys = new long[n];
+            int[] targetValues = new int[n];
+            for (int width = RUN; width < n; width *= 2) {
+                for (int from = 0; from < n; from += 2 * width) {
+                    int mid = Math.min(from + width, n);
+                    int to = Math.min(from + 2 * width, n);
+                    for (int i = from, j = mid, k = from; k < to; k++) {
+                        if (j == to || i < mid && sourceKeys[i] <= sourceKeys[j]) {
+                            targetKeys[k] = sourceKeys[i];
+                            targetValues[k] = sourceValues[i++];
+                        } else {
+                            targetKeys[k] = sourceKeys[j];
+                            targetValues[k] = sourceValues[j++];
+                        }
+                    }
+                }
+                long[] swapKeys = sourceKeys;
+                sourceKeys = targetKeys;
+                targetKeys = swapKeys;
+                int[] swapValues = sourceValues;
+                sourceValues = targetValues;
+                targetValues = swapValues;
+            }
+            if (sourceKeys != keys) {
+                System.arraycopy(sourceKeys, 0, keys, 0, n);
+                System.arraycopy(sourceValues, 0, values, 0, n);
+            }
+        }
+
+        static Entries of(Map<Long, Integer> other) {
+            long[] keys = new long[other.size()];
+            int[] values = new int[other.size()];
+            int i = 0;
+            for (Map.Entry<Long, Integer> entry : other.entrySet()) {
+                keys[i] = entry.getKey();
+                values[i++] = entry.getValue();
+            }
+            return new Entries(keys, values);
+        }
+    }
+
+    @Override
+    Integer value(int pos) {
+        return values[pos];
+    }
+
+    @Override
+    LongIntArrayMap view(AbstractArraySet<Long> keys) {
+        return new LongIntArrayMap((LongArraySet) keys, values, entries);
+    }
+
+    @Override
+    public LongIntArrayMap withEntries() {
+        return entries != null ? this : new LongIntArrayMap(navigableKeySet(), values, entries(values.length));
+    }
+
+    @Override
+    public LongArraySet navigableKeySet() {
+        return (LongArraySet) keys;
+    }
+
+    private int search(long key) {
+        return navigableKeySet().search(key);
+    }
+
+    public boolean containsKey(long key) {
+        return search(key) >= 0;
+    }
+
+    /**
+     * Returns the value of the key, or <tt>absent</tt> if the map has no such key.
+     */
+    public int get(long key, int absent) {
+        int found = search(key);
+        return found >= 0 ? values[found] : absent;
+    }
+
+    /**
+     * Returns the value of the greatest key less than <tt>key</tt> in this map's order,
+     * or <tt>absent</tt> if there is none.
+     */
+    public int lowerValue(long key, int absent) {
+        int pos = keys.lower(search(key));
+        return pos < 0 ? absent : values[pos];
+    }
+
+    public int floorValue(long key, int absent) {
+        int pos = keys.floor(search(key));
+        return pos < 0 ? absent : values[pos];
+    }
+
+    public int ceilingValue(long key, int absent) {
+        int pos = keys.ceiling(search(key));
+        return pos < 0 ? absent : values[pos];
+    }
+
+    public int higherValue(long key, int absent) {
+        int pos = keys.higher(search(key));
+        return pos < 0 ? absent : values[pos];
+    }
+}
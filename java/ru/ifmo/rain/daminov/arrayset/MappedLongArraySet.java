@@ -0,0 +1,137 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+/**
+ * Immutable navigable set of longs stored in a memory-mapped file written by {@link MappedSetWriter}.
+ * Opening maps the file without reading it, and elements stay off the heap; views share the mapping.
+ * The mapping is released when the set and all its views are collected.
+ */
+public class MappedLongArraySet extends AbstractArraySet<Long> {
+    static final int WIDTH = 8;
+
+    private final MappedStorage storage;
+
+    private MappedLongArraySet(MappedStorage storage, int from, int to, boolean reversed) {
+        super(from, to, reversed);
+        this.storage = storage;
+    }
+
+    public static MappedLongArraySet open(Path file) throws IOException {
+        MappedStorage storage = MappedStorage.open(file, WIDTH);
+        return new MappedLongArraySet(storage, 0, storage.size, false);
+    }
+
+    private long get(int pos) {
+        return storage.getLong(pos, 0);
+    }
+
+    @Override
+    Long element(int pos) {
+        return get(pos);
+    }
+
+    @Override
+    int search(Object x) {
+        return search((long) (Long) x);
+    }
+
+    private int search(long x) {
+        int lo = from;
+        int hi = to - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long value = get(mid);
+            if (value < x) {
+                lo = mid + 1;
+            } else if (value > x) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+
+    @Override
+    MappedLongArraySet view(int from, int to, boolean reversed) {
+        return new MappedLongArraySet(storage, from, to, reversed);
+    }
+
+    @Override
+    Comparator<? super Long> storageComparator() {
+        return null;
+    }
+
+    public boolean contains(long x) {
+        return search(x) >= 0;
+    }
+
+    /**
+     * Returns the greatest element less than <tt>x</tt> in this set's order, or <tt>absent</tt> if there is none.
+     */
+    public long lower(long x, long absent) {
+        int pos = lower(search(x));
+        return pos < 0 ? absent : get(pos);
+    }
+
+    public long floor(long x, long absent) {
+        int pos = floor(search(x));
+        return pos < 0 ? absent : get(pos);
+    }
+
+    public long ceiling(long x, long absent) {
+        int pos = ceiling(search(x));
+        return pos < 0 ? absent : get(pos);
+    }
+
+    public long higher(long x, long absent) {
+        int pos = higher(search(x));
+        return pos < 0 ? absent : get(pos);
+    }
+
+    public long firstLong() {
+        return get(firstPos());
+    }
+
+    public long lastLong() {
+        return get(lastPos());
+    }
+
+    @Override
+    public MappedLongArraySet descendingSet() {
+        return view(from, to, !reversed);
+    }
+
+    @Override
+    public MappedLongArraySet subSet(Long fromElement, boolean fromInclusive, Long toElement, boolean toInclusive) {
+        return (MappedLongArraySet) super.subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public MappedLongArraySet headSet(Long toElement, boolean inclusive) {
+        return (MappedLongArraySet) super.headSet(toElement, inclusive);
+    }
+
+    @Override
+    public MappedLongArraySet tailSet(Long fromElement, boolean inclusive) {
+        return (MappedLongArraySet) super.tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public MappedLongArraySet subSet(Long fromElement, Long toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public MappedLongArraySet headSet(Long toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public MappedLongArraySet tailSet(Long fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
@@ -0,0 +1,155 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Writes a file of sorted fixed-width keys for {@link MappedLongArraySet} or {@link MappedUuidArraySet}.
+ * Keys must be added in ascending order; repeated keys are skipped. The file is valid only after {@link #finish()},
+ * until then its header holds an invalid count, so a file of a failed write is rejected when opened.
+ */
+public class MappedSetWriter implements AutoCloseable {
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final int width;
+    private long count;
+    private long lastHigh;
+    private long lastLow;
+    private boolean finished;
+
+    private MappedSetWriter(Path file, int width) throws IOException {
+        this.width = width;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        out.writeInt(MappedStorage.MAGIC);
+        out.writeInt(width);
+        out.writeLong(-1);
+    }
+
+    public static MappedSetWriter longs(Path file) throws IOException {
+        return new MappedSetWriter(file, MappedLongArraySet.WIDTH);
+    }
+
+    public static MappedSetWriter uuids(Path file) throws IOException {
+        return new MappedSetWriter(file, MappedUuidArraySet.WIDTH);
+    }
+
+    /**
+     * Writes the sorted keys to the file and returns the number of distinct keys.
+     */
+    public static long write(Path file, LongStream keys) throws IOException {
+        try (MappedSetWriter writer = longs(file)) {
+            keys.forEachOrdered(key -> {
+                try {
+                    writer.add(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+            return writer.count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static long write(Path file, Stream<UUID> keys) throws IOException {
+        try (MappedSetWriter writer = uuids(file)) {
+            keys.forEachOrdered(key -> {
+                try {
+                    writer.add(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+            return writer.count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void add(long key) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Writer is finished");
+        }
+        if (width != MappedLongArraySet.WIDTH) {
+            throw new IllegalStateException("Writer expects keys of " + width + " bytes");
+        }
+        if (count > 0 && key <= lastLow) {
+            if (key == lastLow) {
+                return;
+            }
+            throw new IllegalArgumentException("Keys are not sorted: " + key + " after " + lastLow);
+        }
+        out.writeLong(key);
+        lastLow = key;
+        count++;
+    }
+
+    public void add(UUID key) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Writer is finished");
+        }
+        if (width != MappedUuidArraySet.WIDTH) {
+            throw new IllegalStateException("Writer expects keys of " + width + " bytes");
+        }
+        long high = key.getMostSignificantBits();
+        long low = key.getLeastSignificantBits();
+        if (count > 0 && (high < lastHigh || high == lastHigh && low <= lastLow)) {
+            if (high == lastHigh && low == lastLow) {
+                return;
+            }
+            throw new IllegalArgumentException("Keys are not sorted: " + key + " after " + new UUID(lastHigh, lastLow));
+        }
+        out.writeLong(high);
+        out.writeLong(low);
+        lastHigh = high;
+        lastLow = low;
+        count++;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Completes the file by writing the number of keys to its header and forcing it to the storage device.
+     * No keys can be added after that.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        out.flush();
+        ByteBuffer size = ByteBuffer.allocate(8);
+        size.putLong(count).flip();
+        channel.write(size, 8);
+        channel.force(false);
+        finished = true;
+    }
+
+    /**
+     * Closes the file, which stays invalid unless {@link #finish()} has been called.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!finished) {
+                out.flush();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only mapping of a file of sorted fixed-width keys written by {@link MappedSetWriter}.
+ * The file is mapped in segments of {@link #SEGMENT} bytes, a whole number of keys each,
+ * so a key never crosses a segment boundary. Keys are big-endian sequences of longs.
+ */
+final class MappedStorage {
+    static final int MAGIC = 0x4d534554;
+    static final int HEADER = 16;
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT = 1L << SEGMENT_SHIFT;
+
+    private final ByteBuffer[] segments;
+    final int width;
+    final int size;
+
+    private MappedStorage(ByteBuffer[] segments, int width, int size) {
+        this.segments = segments;
+        this.width = width;
+        this.size = size;
+    }
+
+    static MappedStorage open(Path file, int width) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                throw new IOException(file + " is not a mapped set");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a mapped set");
+            }
+            if (header.getInt() != width) {
+                throw new IOException(file + " holds keys of another width");
+            }
+            long count = header.getLong();
+            if (count < 0 || count > Integer.MAX_VALUE || HEADER + count * width > channel.size()) {
+                throw new IOException(file + " is truncated or has invalid size " + count);
+            }
+            long bytes = count * width;
+            ByteBuffer[] segments = new ByteBuffer[(int) ((bytes + SEGMENT - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long offset = (long) i << SEGMENT_SHIFT;
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + offset, Math.min(SEGMENT, bytes - offset));
+                segments[i] = segment;
+            }
+            return new MappedStorage(segments, width, (int) count);
+        }
+    }
+
+    /**
+     * Returns the long number <tt>word</tt> of the key at the position.
+     */
+    long getLong(int pos, int word) {
+        long offset = (long) pos * width + word * 8;
+        return segments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & (SEGMENT - 1)));
+    }
+}
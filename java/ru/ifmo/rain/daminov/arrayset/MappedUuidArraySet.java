@@ -0,0 +1,101 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Immutable navigable set of UUIDs stored in a memory-mapped file written by {@link MappedSetWriter},
+ * ordered as by {@link UUID#compareTo}. Opening maps the file without reading it, and elements stay off the heap
+ * until they are returned; views share the mapping.
+ */
+public class MappedUuidArraySet extends AbstractArraySet<UUID> {
+    static final int WIDTH = 16;
+
+    private final MappedStorage storage;
+
+    private MappedUuidArraySet(MappedStorage storage, int from, int to, boolean reversed) {
+        super(from, to, reversed);
+        this.storage = storage;
+    }
+
+    public static MappedUuidArraySet open(Path file) throws IOException {
+        MappedStorage storage = MappedStorage.open(file, WIDTH);
+        return new MappedUuidArraySet(storage, 0, storage.size, false);
+    }
+
+    @Override
+    UUID element(int pos) {
+        return new UUID(storage.getLong(pos, 0), storage.getLong(pos, 1));
+    }
+
+    @Override
+    int search(Object x) {
+        UUID key = (UUID) x;
+        long high = key.getMostSignificantBits();
+        long low = key.getLeastSignificantBits();
+        int lo = from;
+        int hi = to - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Long.compare(storage.getLong(mid, 0), high);
+            if (cmp == 0) {
+                cmp = Long.compare(storage.getLong(mid, 1), low);
+            }
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+
+    @Override
+    MappedUuidArraySet view(int from, int to, boolean reversed) {
+        return new MappedUuidArraySet(storage, from, to, reversed);
+    }
+
+    @Override
+    Comparator<? super UUID> storageComparator() {
+        return null;
+    }
+
+    @Override
+    public MappedUuidArraySet descendingSet() {
+        return view(from, to, !reversed);
+    }
+
+    @Override
+    public MappedUuidArraySet subSet(UUID fromElement, boolean fromInclusive, UUID toElement, boolean toInclusive) {
+        return (MappedUuidArraySet) super.subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public MappedUuidArraySet headSet(UUID toElement, boolean inclusive) {
+        return (MappedUuidArraySet) super.headSet(toElement, inclusive);
+    }
+
+    @Override
+    public MappedUuidArraySet tailSet(UUID fromElement, boolean inclusive) {
+        return (MappedUuidArraySet) super.tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public MappedUuidArraySet subSet(UUID fromElement, UUID toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public MappedUuidArraySet headSet(UUID toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public MappedUuidArraySet tailSet(UUID fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
@@ -0,0 +1,646 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.util.*;
+
+/**
+ * Mutable companion of {@link ArraySet}. Elements live in a sorted base array that is never modified;
+ * updates go to small sorted arrays of added and removed elements, which are merged into a new base
+ * once they outgrow the square root of its size, so an update costs <tt>O(sqrt(n))</tt> amortized.
+ * <p>
+ * Every update publishes a new immutable state, so reads take no locks and see a consistent set;
+ * updates are serialized. Iterators see the state at their creation. Descending and range views
+ * are backed by the set and read its current state, pending updates are merged only by {@link #snapshot()}.
+ */
+public class MutableArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final int MIN_MERGE = 32;
+
+    private final Comparator<? super E> comparator;
+    private final View all = new View(null, false, null, false, false);
+    private volatile State<E> state;
+
+    public MutableArraySet() {
+        this(Collections.emptyList(), null);
+    }
+
+    public MutableArraySet(Comparator<? super E> comparator) {
+        this(Collections.emptyList(), comparator);
+    }
+
+    public MutableArraySet(Collection<? extends E> other) {
+        this(other, null);
+    }
+
+    public MutableArraySet(Collection<? extends E> other, Comparator<? super E> comparator) {
+        this.comparator = comparator;
+        state = new State<>(ArraySet.sortedUnique(other, comparator), empty(), empty());
+    }
+
+    /**
+     * Base elements with <tt>added</tt> elements absent from the base and <tt>removed</tt> elements of the base.
+     */
+    private static final class State<E> {
+        final E[] base;
+        final E[] added;
+        final E[] removed;
+        volatile ArraySet<E> snapshot;
+
+        State(E[] base, E[] added, E[] removed) {
+            this.base = base;
+            this.added = added;
+            this.removed = removed;
+        }
+
+        int size() {
+            return base.length - removed.length + added.length;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E[] empty() {
+        return (E[]) new Object[0];
+    }
+
+    private int search(E[] elements, Object x) {
+        @SuppressWarnings("unchecked")
+        E key = (E) x;
+        return Arrays.binarySearch(elements, key, comparator);
+    }
+
+    private int compare(E a, E b) {
+        @SuppressWarnings("unchecked")
+        int res = comparator == null ? ((Comparable<? super E>) a).compareTo(b) : comparator.compare(a, b);
+        return res;
+    }
+
+    private static <E> E[] insert(E[] elements, int pos, E x) {
+        E[] res = Arrays.copyOf(elements, elements.length + 1);
+        System.arraycopy(elements, pos, res, pos + 1, elements.length - pos);
+        res[pos] = x;
+        return res;
+    }
+
+    private static <E> E[] delete(E[] elements, int pos) {
+        E[] res = Arrays.copyOf(elements, elements.length - 1);
+        System.arraycopy(elements, pos + 1, res, pos, elements.length - pos - 1);
+        return res;
+    }
+
+    /**
+     * Returns an immutable set of the current elements. The pending updates are merged first,
+     * so snapshots taken without updates in between share the same array.
+     */
+    public ArraySet<E> snapshot() {
+        State<E> current = state;
+        if (current.snapshot == null) {
+            synchronized (this) {
+                current = state;
+                if (current.added.length != 0 || current.removed.length != 0) {
+                    current = new State<>(merge(current), empty(), empty());
+                    state = current;
+                }
+                current.snapshot = new ArraySet<>(current.base, comparator, Layout.SORTED);
+            }
+        }
+        return current.snapshot;
+    }
+
+    private E[] merge(State<E> current) {
+        E[] base = current.base;
+        E[] added = current.added;
+        E[] removed = current.removed;
+        @SuppressWarnings("unchecked")
+        E[] res = (E[]) new Object[current.size()];
+        int size = 0;
+        for (int i = 0, j = 0, k = 0; i < base.length || k < added.length; ) {
+            if (k == added.length || i < base.length && compare(base[i], added[k]) < 0) {
+                if (j < removed.length && removed[j] == base[i]) {
+                    j++;
+                } else {
+                    res[size++] = base[i];
+                }
+                i++;
+            } else {
+                res[size++] = added[k++];
+            }
+        }
+        return res;
+    }
+
+    private void publish(State<E> next) {
+        if (next.added.length + next.removed.length > Math.max(MIN_MERGE, (int) Math.sqrt(next.base.length))) {
+            next = new State<>(merge(next), empty(), empty());
+        }
+        state = next;
+    }
+
+    @Override
+    public synchronized boolean add(E x) {
+        Objects.requireNonNull(x);
+        State<E> current = state;
+        int removedPos = search(current.removed, x);
+        if (removedPos >= 0) {
+            publish(new State<>(current.base, current.added, delete(current.removed, removedPos)));
+            return true;
+        }
+        if (search(current.base, x) >= 0) {
+            return false;
+        }
+        int addedPos = search(current.added, x);
+        if (addedPos >= 0) {
+            return false;
+        }
+        publish(new State<>(current.base, insert(current.added, -addedPos - 1, x), current.removed));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object x) {
+        State<E> current = state;
+        int addedPos = search(current.added, x);
+        if (addedPos >= 0) {
+            publish(new State<>(current.base, delete(current.added, addedPos), current.removed));
+            return true;
+        }
+        int basePos = search(current.base, x);
+        int removedPos = search(current.removed, x);
+        if (basePos < 0 || removedPos >= 0) {
+            return false;
+        }
+        publish(new State<>(current.base, current.added, insert(current.removed, -removedPos - 1, current.base[basePos])));
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object x) {
+        State<E> current = state;
+        return search(current.added, x) >= 0 || search(current.base, x) >= 0 && search(current.removed, x) < 0;
+    }
+
+    @Override
+    public int size() {
+        return state.size();
+    }
+
+    /**
+     * Returns the nearest element to <tt>x</tt> in the direction, or <tt>null</tt>.
+     */
+    private E navigate(State<E> current, E x, boolean up, boolean inclusive) {
+        E fromAdded = element(current.added, index(search(current.added, x), up, inclusive));
+        int pos = index(search(current.base, x), up, inclusive);
+        while (0 <= pos && pos < current.base.length && search(current.removed, current.base[pos]) >= 0) {
+            pos += up ? 1 : -1;
+        }
+        E fromBase = element(current.base, pos);
+        if (fromAdded == null || fromBase == null) {
+            return fromAdded == null ? fromBase : fromAdded;
+        }
+        return (compare(fromAdded, fromBase) < 0) == up ? fromAdded : fromBase;
+    }
+
+    private static int index(int found, boolean up, boolean inclusive) {
+        if (found >= 0) {
+            return inclusive ? found : found + (up ? 1 : -1);
+        }
+        return up ? -found - 1 : -found - 2;
+    }
+
+    private static <E> E element(E[] elements, int pos) {
+        return 0 <= pos && pos < elements.length ? elements[pos] : null;
+    }
+
+    /**
+     * Returns the least or the greatest element, or <tt>null</tt>.
+     */
+    private E edge(State<E> current, boolean up) {
+        E[] base = current.base;
+        E[] added = current.added;
+        E fromAdded = added.length == 0 ? null : added[up ? 0 : added.length - 1];
+        E fromBase = null;
+        for (int i = 0; i < base.length; i++) {
+            E candidate = base[up ? i : base.length - 1 - i];
+            if (search(current.removed, candidate) < 0) {
+                fromBase = candidate;
+                break;
+            }
+        }
+        if (fromAdded == null || fromBase == null) {
+            return fromAdded == null ? fromBase : fromAdded;
+        }
+        return (compare(fromAdded, fromBase) < 0) == up ? fromAdded : fromBase;
+    }
+
+    @Override
+    public E lower(E x) {
+        return navigate(state, x, false, false);
+    }
+
+    @Override
+    public E floor(E x) {
+        return navigate(state, x, false, true);
+    }
+
+    @Override
+    public E ceiling(E x) {
+        return navigate(state, x, true, true);
+    }
+
+    @Override
+    public E higher(E x) {
+        return navigate(state, x, true, false);
+    }
+
+    @Override
+    public E first() {
+        E res = edge(state, true);
+        if (res == null) {
+            throw new NoSuchElementException();
+        }
+        return res;
+    }
+
+    @Override
+    public E last() {
+        E res = edge(state, false);
+        if (res == null) {
+            throw new NoSuchElementException();
+        }
+        return res;
+    }
+
+    @Override
+    public synchronized E pollFirst() {
+        E res = edge(state, true);
+        if (res != null) {
+            remove(res);
+        }
+        return res;
+    }
+
+    @Override
+    public synchronized E pollLast() {
+        E res = edge(state, false);
+        if (res != null) {
+            remove(res);
+        }
+        return res;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new StateIterator(state, true, null, false, null, false);
+    }
+
+    /**
+     * Iterator over the elements of the state between the bounds in the direction, <tt>null</tt> bounds are open.
+     */
+    private final class StateIterator implements Iterator<E> {
+        private final State<E> current;
+        private final boolean up;
+        private final E end;
+        private final boolean endInclusive;
+        private int i;
+        private int k;
+        private E next;
+        private E last;
+
+        StateIterator(State<E> current, boolean up, E start, boolean startInclusive, E end, boolean endInclusive) {
+            this.current = current;
+            this.up = up;
+            this.end = end;
+            this.endInclusive = endInclusive;
+            i = start(current.base, start, startInclusive);
+            k = start(current.added, start, startInclusive);
+            advance();
+        }
+
+        private int start(E[] elements, E start, boolean inclusive) {
+            if (start == null) {
+                return up ? 0 : elements.length - 1;
+            }
+            return index(search(elements, start), up, inclusive);
+        }
+
+        private void advance() {
+            int step = up ? 1 : -1;
+            while (0 <= i && i < current.base.length && search(current.removed, current.base[i]) >= 0) {
+                i += step;
+            }
+            E fromBase = element(current.base, i);
+            E fromAdded = element(current.added, k);
+            if (fromAdded != null && (fromBase == null || (compare(fromAdded, fromBase) < 0) == up)) {
+                next = fromAdded;
+                k += step;
+            } else {
+                next = fromBase;
+                i += step;
+            }
+            if (next != null && end != null) {
+                int c = compare(next, end) * step;
+                if (c > 0 || c == 0 && !endInclusive) {
+                    next = null;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            advance();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            MutableArraySet.this.remove(last);
+            last = null;
+        }
+    }
+
+    /**
+     * View of the elements between the bounds, <tt>null</tt> bounds are open. It reads the current state
+     * of the set on every call, so it reflects later updates without merging them.
+     */
+    private final class View extends AbstractSet<E> implements NavigableSet<E> {
+        private final E low;
+        private final boolean lowInclusive;
+        private final E high;
+        private final boolean highInclusive;
+        private final boolean reversed;
+
+        View(E low, boolean lowInclusive, E high, boolean highInclusive, boolean reversed) {
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+            this.reversed = reversed;
+        }
+
+        private boolean tooLow(E x) {
+            if (low == null) {
+                return false;
+            }
+            int c = compare(x, low);
+            return c < 0 || c == 0 && !lowInclusive;
+        }
+
+        private boolean tooHigh(E x) {
+            if (high == null) {
+                return false;
+            }
+            int c = compare(x, high);
+            return c > 0 || c == 0 && !highInclusive;
+        }
+
+        private boolean inRange(Object x) {
+            @SuppressWarnings("unchecked")
+            E e = (E) x;
+            return !tooLow(e) && !tooHigh(e);
+        }
+
+        private E checked(E x) {
+            return x == null || tooLow(x) || tooHigh(x) ? null : x;
+        }
+
+        /**
+         * Returns the least or the greatest element of the view in storage order, or <tt>null</tt>.
+         */
+        private E end(boolean up) {
+            State<E> current = state;
+            E bound = up ? low : high;
+            return checked(bound == null
+                    ? edge(current, up)
+                    : navigate(current, bound, up, up ? lowInclusive : highInclusive));
+        }
+
+        /**
+         * Returns the nearest element of the view to <tt>x</tt> in the direction of storage order, or <tt>null</tt>.
+         */
+        private E nearest(E x, boolean up, boolean inclusive) {
+            if (up ? tooLow(x) : tooHigh(x)) {
+                return end(up);
+            }
+            return checked(navigate(state, x, up, inclusive));
+        }
+
+        /**
+         * Returns the number of elements of the sorted array within the bounds.
+         */
+        private int count(E[] elements) {
+            int from = low == null ? 0 : index(search(elements, low), true, lowInclusive);
+            int to = high == null ? elements.length : index(search(elements, high), false, highInclusive) + 1;
+            return Math.max(0, to - from);
+        }
+
+        @Override
+        public int size() {
+            State<E> current = state;
+            return count(current.base) - count(current.removed) + count(current.added);
+        }
+
+        @Override
+        public boolean contains(Object x) {
+            return inRange(x) && MutableArraySet.this.contains(x);
+        }
+
+        @Override
+        public boolean add(E x) {
+            if (!inRange(x)) {
+                throw new IllegalArgumentException("Element is out of the view range");
+            }
+            return MutableArraySet.this.add(x);
+        }
+
+        @Override
+        public boolean remove(Object x) {
+            return inRange(x) && MutableArraySet.this.remove(x);
+        }
+
+        @Override
+        public E lower(E x) {
+            return nearest(x, reversed, false);
+        }
+
+        @Override
+        public E floor(E x) {
+            return nearest(x, reversed, true);
+        }
+
+        @Override
+        public E ceiling(E x) {
+            return nearest(x, !reversed, true);
+        }
+
+        @Override
+        public E higher(E x) {
+            return nearest(x, !reversed, false);
+        }
+
+        @Override
+        public E first() {
+            E res = end(!reversed);
+            if (res == null) {
+                throw new NoSuchElementException();
+            }
+            return res;
+        }
+
+        @Override
+        public E last() {
+            E res = end(reversed);
+            if (res == null) {
+                throw new NoSuchElementException();
+            }
+            return res;
+        }
+
+        @Override
+        public E pollFirst() {
+            synchronized (MutableArraySet.this) {
+                E res = end(!reversed);
+                if (res != null) {
+                    MutableArraySet.this.remove(res);
+                }
+                return res;
+            }
+        }
+
+        @Override
+        public E pollLast() {
+            synchronized (MutableArraySet.this) {
+                E res = end(reversed);
+                if (res != null) {
+                    MutableArraySet.this.remove(res);
+                }
+                return res;
+            }
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return reversed ? Collections.reverseOrder(comparator) : comparator;
+        }
+
+        private Iterator<E> iterator(boolean up) {
+            return up
+                    ? new StateIterator(state, true, low, lowInclusive, high, highInclusive)
+                    : new StateIterator(state, false, high, highInclusive, low, lowInclusive);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return iterator(!reversed);
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return iterator(reversed);
+        }
+
+        @Override
+        public NavigableSet<E> descendingSet() {
+            return new View(low, lowInclusive, high, highInclusive, !reversed);
+        }
+
+        /**
+         * Returns the view between the bounds in storage order within the bounds of this view.
+         */
+        private View range(E from, boolean fromInclusive, E to, boolean toInclusive) {
+            boolean tighterLow = from != null && (low == null || compare(from, low) > 0 || compare(from, low) == 0 && !fromInclusive);
+            boolean tighterHigh = to != null && (high == null || compare(to, high) < 0 || compare(to, high) == 0 && !toInclusive);
+            return new View(tighterLow ? from : low, tighterLow ? fromInclusive : lowInclusive,
+                    tighterHigh ? to : high, tighterHigh ? toInclusive : highInclusive, reversed);
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+            Objects.requireNonNull(fromElement);
+            Objects.requireNonNull(toElement);
+            return reversed
+                    ? range(toElement, toInclusive, fromElement, fromInclusive)
+                    : range(fromElement, fromInclusive, toElement, toInclusive);
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            Objects.requireNonNull(toElement);
+            return reversed ? range(toElement, inclusive, null, false) : range(null, false, toElement, inclusive);
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            Objects.requireNonNull(fromElement);
+            return reversed ? range(null, false, fromElement, inclusive) : range(fromElement, inclusive, null, false);
+        }
+
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return all.descendingSet();
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new StateIterator(state, false, null, false, null, false);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return all.subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return all.headSet(toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return all.tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
@@ -0,0 +1,250 @@
+package ru.ifmo.rain.daminov.arrayset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+
+/**
+ * Binary format of array set snapshots. A snapshot is a header of magic, version, type of keys, direction
+ * and count, followed by the keys in storage order. Integral keys are written as varint deltas from
+ * the previous key, the first one zigzag-encoded; doubles as deltas of their order-preserving bits.
+ * Strings are front-coded: the length of the prefix shared with the previous string, then the length
+ * and UTF-8 bytes of the rest.
+ * <p>
+ * Snapshots are read from a mapping of the file, and the keys are trusted to be sorted and distinct,
+ * so loading takes one decoding pass without sorting or checks of the order.
+ */
+final class SnapshotFormat {
+    private static final int MAGIC = 0x41534554;
+    private static final int VERSION = 1;
+    private static final int HEADER = 11;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int DOUBLE = 3;
+    private static final int STRING = 4;
+
+    private SnapshotFormat() {
+    }
+
+    private static DataOutputStream header(OutputStream out, int type, int count, boolean reversed) throws IOException {
+        DataOutputStream res = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        res.writeInt(MAGIC);
+        res.writeByte(VERSION);
+        res.writeByte(type);
+        res.writeBoolean(reversed);
+        res.writeInt(count);
+        return res;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Maps doubles to longs of the same order as {@link Double#compare}, the mapping is its own inverse.
+     */
+    private static long orderedBits(long bits) {
+        return bits ^ bits >> 63 & Long.MAX_VALUE;
+    }
+
+    static void write(OutputStream out, int[] data, int from, int to, boolean reversed) throws IOException {
+        DataOutputStream res = header(out, INT, to - from, reversed);
+        for (int i = from; i < to; i++) {
+            writeVarLong(res, i == from ? zigzag(data[i]) : (long) data[i] - data[i - 1]);
+        }
+        res.flush();
+    }
+
+    static void write(OutputStream out, long[] data, int from, int to, boolean reversed) throws IOException {
+        DataOutputStream res = header(out, LONG, to - from, reversed);
+        for (int i = from; i < to; i++) {
+            writeVarLong(res, i == from ? zigzag(data[i]) : data[i] - data[i - 1]);
+        }
+        res.flush();
+    }
+
+    static void write(OutputStream out, double[] data, int from, int to, boolean reversed) throws IOException {
+        DataOutputStream res = header(out, DOUBLE, to - from, reversed);
+        long prev = 0;
+        for (int i = from; i < to; i++) {
+            long bits = orderedBits(Double.doubleToLongBits(data[i]));
+            writeVarLong(res, i == from ? zigzag(bits) : bits - prev);
+            prev = bits;
+        }
+        res.flush();
+    }
+
+    /**
+     * @throws IllegalArgumentException if some of the elements are not strings
+     */
+    static void write(OutputStream out, Object[] data, int from, int to, boolean reversed) throws IOException {
+        for (int i = from; i < to; i++) {
+            if (!(data[i] instanceof String)) {
+                throw new IllegalArgumentException("Only sets of strings can be written, found " + data[i].getClass().getName());
+            }
+        }
+        DataOutputStream res = header(out, STRING, to - from, reversed);
+        String prev = "";
+        for (int i = from; i < to; i++) {
+            String s = (String) data[i];
+            int shared = 0;
+            int limit = Math.min(prev.length(), s.length());
+            while (shared < limit && prev.charAt(shared) == s.charAt(shared)) {
+                shared++;
+            }
+            if (shared > 0 && Character.isHighSurrogate(s.charAt(shared - 1))) {
+                shared--;
+            }
+            byte[] rest = s.substring(shared).getBytes(StandardCharsets.UTF_8);
+            writeVarLong(res, shared);
+            writeVarLong(res, rest.length);
+            res.write(rest);
+            prev = s;
+        }
+        res.flush();
+    }
+
+    /**
+     * Mapping of a snapshot starting at the position of the channel, after the header.
+     */
+    private static final class Input {
+        private final FileChannel channel;
+        private final long start;
+        private final ByteBuffer buffer;
+        final boolean reversed;
+        final int count;
+
+        Input(FileChannel channel, int type) throws IOException {
+            this.channel = channel;
+            start = channel.position();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(Math.max(0, channel.size() - start), Integer.MAX_VALUE));
+            if (buffer.remaining() < HEADER || buffer.getInt() != MAGIC) {
+                throw new IOException("Not an array set snapshot");
+            }
+            int version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            if (buffer.get() != type) {
+                throw new IOException("Snapshot holds keys of another type");
+            }
+            reversed = buffer.get() != 0;
+            count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IOException("Snapshot is truncated or has invalid size " + count);
+            }
+        }
+
+        long readVarLong() throws IOException {
+            long res = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+                byte b = buffer.get();
+                res |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return res;
+                }
+            }
+            throw new IOException("Snapshot is truncated or corrupt");
+        }
+
+        int readLength(int limit) throws IOException {
+            long res = readVarLong();
+            if (res > limit) {
+                throw new IOException("Snapshot is truncated or corrupt");
+            }
+            return (int) res;
+        }
+
+        void get(byte[] target, int length) {
+            buffer.get(target, 0, length);
+        }
+
+        int remaining() {
+            return buffer.remaining();
+        }
+
+        /**
+         * Moves the channel past the snapshot.
+         */
+        void finish() throws IOException {
+            channel.position(start + buffer.position());
+        }
+    }
+
+    static IntArraySet readInts(FileChannel channel, Layout layout) throws IOException {
+        Input in = new Input(channel, INT);
+        int[] data = new int[in.count];
+        long prev = 0;
+        for (int i = 0; i < data.length; i++) {
+            prev = i == 0 ? unzigzag(in.readVarLong()) : prev + in.readVarLong();
+            data[i] = (int) prev;
+        }
+        in.finish();
+        IntArraySet res = new IntArraySet(data, layout);
+        return in.reversed ? res.descendingSet() : res;
+    }
+
+    static LongArraySet readLongs(FileChannel channel, Layout layout) throws IOException {
+        Input in = new Input(channel, LONG);
+        long[] data = new long[in.count];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i == 0 ? unzigzag(in.readVarLong()) : data[i - 1] + in.readVarLong();
+        }
+        in.finish();
+        LongArraySet res = new LongArraySet(data, layout);
+        return in.reversed ? res.descendingSet() : res;
+    }
+
+    static DoubleArraySet readDoubles(FileChannel channel, Layout layout) throws IOException {
+        Input in = new Input(channel, DOUBLE);
+        double[] data = new double[in.count];
+        long prev = 0;
+        for (int i = 0; i < data.length; i++) {
+            prev = i == 0 ? unzigzag(in.readVarLong()) : prev + in.readVarLong();
+            data[i] = Double.longBitsToDouble(orderedBits(prev));
+        }
+        in.finish();
+        DoubleArraySet res = new DoubleArraySet(data, layout);
+        return in.reversed ? res.descendingSet() : res;
+    }
+
+    static ArraySet<String> readStrings(FileChannel channel, Comparator<? super String> comparator, Layout layout) throws IOException {
+        Input in = new Input(channel, STRING);
+        String[] data = new String[in.count];
+        byte[] bytes = new byte[64];
+        String prev = "";
+        for (int i = 0; i < data.length; i++) {
+            int shared = in.readLength(prev.length());
+            int length = in.readLength(in.remaining());
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            in.get(bytes, length);
+            String rest = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            prev = data[i] = shared == 0 ? rest : prev.substring(0, shared).concat(rest);
+        }
+        in.finish();
+        ArraySet<String> res = new ArraySet<>(data, comparator, layout);
+        return in.reversed ? res.descendingSet() : res;
+    }
+}
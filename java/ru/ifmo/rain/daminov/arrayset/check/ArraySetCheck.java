@@ -0,0 +1,410 @@
+package ru.ifmo.rain.daminov.arrayset.check;
+
+import ru.ifmo.rain.daminov.arrayset.ArraySet;
+import ru.ifmo.rain.daminov.arrayset.DoubleArraySet;
+import ru.ifmo.rain.daminov.arrayset.IntArraySet;
+import ru.ifmo.rain.daminov.arrayset.Layout;
+import ru.ifmo.rain.daminov.arrayset.LongArraySet;
+import ru.ifmo.rain.daminov.arrayset.MappedLongArraySet;
+import ru.ifmo.rain.daminov.arrayset.MappedSetWriter;
+import ru.ifmo.rain.daminov.arrayset.MappedUuidArraySet;
+import ru.ifmo.rain.daminov.arrayset.MutableArraySet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+/**
+ * Differential check of the array sets against {@link TreeSet} on random data with extreme values,
+ * kept out of the <tt>arrayset</tt> package so that it uses only the public API. Snapshots of sets
+ * of every key type are written and read back, {@link MutableArraySet} and its views are updated
+ * at random, and mapped sets are opened from files written by {@link MappedSetWriter}. Snapshots of fixed
+ * sets are also compared byte by byte with version 1 of the snapshot format, so a change of the format
+ * fails the check.
+ * <p>
+ * Usage: <tt>ArraySetCheck work-dir [--iterations n] [--seed n]</tt>.
+ */
+public class ArraySetCheck {
+    private static final long[] LONGS = {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, 1};
+    private static final int[] INTS = {Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1, 1};
+    private static final double[] DOUBLES = {
+            Double.NaN, Double.longBitsToDouble(0x7ff0000000000001L), -0.0, 0.0, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE
+    };
+    /**
+     * Parts of random strings, pairs of emoji share their high surrogate.
+     */
+    private static final String[] PARTS = {"", "a", "ab", "\u043F\u0440\u0438", "\uD83D\uDE00", "\uD83D\uDE01", "\uD83E\uDD14", "~"};
+
+    private final Path dir;
+    private final int iterations;
+    private final Random random;
+
+    private ArraySetCheck(Path dir, int iterations, long seed) {
+        this.dir = dir;
+        this.iterations = iterations;
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        if (args == null || args.length < 1 || args.length % 2 != 1 || args[0] == null) {
+            System.out.println("Usage: ArraySetCheck work-dir [--iterations n] [--seed n]");
+            return;
+        }
+        int iterations = 100;
+        long seed = 0;
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--iterations":
+                        iterations = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[i + 1]);
+                        break;
+                    default:
+                        System.out.println("Unknown option " + args[i]);
+                        return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number, " + e.getMessage());
+            return;
+        }
+        try {
+            ArraySetCheck check = new ArraySetCheck(Files.createDirectories(Paths.get(args[0])), iterations, seed);
+            check.run("snapshot format", check::format);
+            check.run("snapshots", check::snapshots);
+            check.run("mutable set", check::mutable);
+            check.run("mapped sets", check::mapped);
+        } catch (CheckFailure e) {
+            System.out.println("Check failed, " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Check failed with I/O error, " + e.getMessage());
+        } catch (InvalidPathException e) {
+            System.out.println("Invalid path, " + e.getMessage());
+        }
+    }
+
+    private static class CheckFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CheckFailure(String message) {
+            super(message);
+        }
+    }
+
+    private interface Body {
+        void run() throws IOException;
+    }
+
+    private void run(String name, Body body) throws IOException {
+        long start = System.nanoTime();
+        body.run();
+        System.out.println("OK " + name + " in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new CheckFailure(message);
+        }
+    }
+
+    /**
+     * Compares the elements of the sets and their navigation at every probe, in both directions.
+     */
+    private static <E> void compare(String name, NavigableSet<E> expected, NavigableSet<E> actual, Iterable<E> probes) {
+        for (int d = 0; d < 2; d++) {
+            check(new ArrayList<>(expected).equals(new ArrayList<>(actual)),
+                    name + ": expected " + expected + ", found " + actual);
+            for (E probe : probes) {
+                check(Objects.equals(expected.lower(probe), actual.lower(probe))
+                                && Objects.equals(expected.floor(probe), actual.floor(probe))
+                                && Objects.equals(expected.ceiling(probe), actual.ceiling(probe))
+                                && Objects.equals(expected.higher(probe), actual.higher(probe))
+                                && expected.contains(probe) == actual.contains(probe),
+                        name + ": navigation differs at " + probe);
+            }
+            expected = expected.descendingSet();
+            actual = actual.descendingSet();
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder res = new StringBuilder();
+        for (byte b : bytes) {
+            res.append(Character.forDigit(b >> 4 & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return res.toString();
+    }
+
+    private interface Writer {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static void bytes(String name, Writer set, String expected) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        set.writeTo(out);
+        check(hex(out.toByteArray()).equals(expected), name + " snapshot is " + hex(out.toByteArray()) + ", expected " + expected);
+    }
+
+    private void format() throws IOException {
+        bytes("long", new LongArraySet(Long.MAX_VALUE, -1, Long.MIN_VALUE, 0)::writeTo,
+                "41534554" + "01" + "02" + "00" + "00000004"
+                        + "ffffffffffffffffff01" + "ffffffffffffffff7f" + "01" + "ffffffffffffffff7f");
+        bytes("int", new IntArraySet(Integer.MAX_VALUE, Integer.MIN_VALUE, 300).descendingSet()::writeTo,
+                "41534554" + "01" + "01" + "01" + "00000003" + "ffffffff0f" + "ac82808008" + "d3fdffff07");
+        bytes("double", new DoubleArraySet(Double.NaN, 0.0, -0.0, 1.0)::writeTo,
+                "41534554" + "01" + "03" + "00" + "00000004" + "01" + "01" + "80808080808080f83f" + "808080808080808440");
+        bytes("string", new ArraySet<>(Arrays.asList("a\uD83D\uDE00b", "a\uD83D\uDE00c", "\uD83D\uDE00", "\uD83D\uDE01"))::writeTo,
+                "41534554" + "01" + "04" + "00" + "00000004"
+                        + "000661f09f988062" + "030163" + "0004f09f9880" + "0004f09f9881");
+    }
+
+    private long randomLong() {
+        return random.nextInt(5) == 0 ? LONGS[random.nextInt(LONGS.length)] : random.nextLong() >> random.nextInt(64);
+    }
+
+    private int randomInt() {
+        return random.nextInt(5) == 0 ? INTS[random.nextInt(INTS.length)] : random.nextInt() >> random.nextInt(32);
+    }
+
+    private double randomDouble() {
+        return random.nextInt(5) == 0
+                ? DOUBLES[random.nextInt(DOUBLES.length)]
+                : random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+    }
+
+    private String randomString() {
+        StringBuilder res = new StringBuilder();
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            res.append(PARTS[random.nextInt(PARTS.length)]);
+        }
+        return res.toString();
+    }
+
+    private int randomSize() {
+        return random.nextInt(10) == 0 ? random.nextInt(3) : random.nextInt(1000);
+    }
+
+    private Layout randomLayout() {
+        return Layout.values()[random.nextInt(Layout.values().length)];
+    }
+
+    /**
+     * Writes sets of every kind, reversed ones and views among them, one after another to a file
+     * and reads them back with another layout.
+     */
+    private void snapshots() throws IOException {
+        Path file = dir.resolve("snapshots.bin");
+        for (int it = 0; it < iterations; it++) {
+            int size = randomSize();
+            List<Long> longs = new ArrayList<>();
+            List<Integer> ints = new ArrayList<>();
+            List<Double> doubles = new ArrayList<>();
+            List<String> strings = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                longs.add(randomLong());
+                ints.add(randomInt());
+                doubles.add(randomDouble());
+                strings.add(randomString());
+            }
+            Comparator<String> comparator = random.nextBoolean()
+                    ? null
+                    : Comparator.comparing(String::length).thenComparing(Comparator.reverseOrder());
+            NavigableSet<Long> expectedLongs = new TreeSet<>(longs);
+            NavigableSet<Integer> expectedInts = new TreeSet<>(ints);
+            NavigableSet<Double> expectedDoubles = new TreeSet<>(doubles);
+            NavigableSet<String> expectedStrings = new TreeSet<>(comparator);
+            expectedStrings.addAll(strings);
+            LongArraySet longSet = new LongArraySet(longs, randomLayout());
+            IntArraySet intSet = new IntArraySet(ints, randomLayout());
+            DoubleArraySet doubleSet = new DoubleArraySet(doubles, randomLayout());
+            ArraySet<String> stringSet = new ArraySet<>(strings, comparator, randomLayout());
+            if (random.nextBoolean()) {
+                expectedLongs = expectedLongs.descendingSet();
+                longSet = longSet.descendingSet();
+                expectedStrings = expectedStrings.descendingSet();
+                stringSet = stringSet.descendingSet();
+            }
+            if (!expectedInts.isEmpty()) {
+                int bound = ints.get(random.nextInt(ints.size()));
+                expectedInts = expectedInts.headSet(bound, true);
+                intSet = intSet.headSet(bound, true);
+            }
+            if (!expectedDoubles.isEmpty()) {
+                double bound = doubles.get(random.nextInt(doubles.size()));
+                expectedDoubles = expectedDoubles.tailSet(bound, false);
+                doubleSet = doubleSet.tailSet(bound, false);
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                out.write(new byte[]{1, 2, 3});
+                longSet.writeTo(out);
+                intSet.writeTo(out);
+                doubleSet.writeTo(out);
+                stringSet.writeTo(out);
+            }
+            try (FileChannel channel = FileChannel.open(file)) {
+                channel.position(3);
+                compare("long snapshot", expectedLongs, LongArraySet.readFrom(channel, randomLayout()), longs);
+                compare("int snapshot", expectedInts, IntArraySet.readFrom(channel, randomLayout()), ints);
+                compare("double snapshot", expectedDoubles, DoubleArraySet.readFrom(channel, randomLayout()), doubles);
+                compare("string snapshot", expectedStrings, ArraySet.readFrom(channel, comparator, randomLayout()), strings);
+                check(channel.position() == channel.size(), "snapshots are not read to the end");
+            }
+        }
+    }
+
+    /**
+     * Returns a descending, head, tail or sub-set view of the set by the kind from 0 to 3.
+     */
+    private static NavigableSet<Integer> view(NavigableSet<Integer> set, int kind,
+                                              int low, boolean lowInclusive, int high, boolean highInclusive) {
+        switch (kind) {
+            case 0:
+                return set.descendingSet();
+            case 1:
+                return set.headSet(high, highInclusive);
+            case 2:
+                return set.tailSet(low, lowInclusive);
+            default:
+                return set.subSet(low, lowInclusive, high, highInclusive);
+        }
+    }
+
+    private static String add(NavigableSet<Integer> set, Integer x) {
+        try {
+            return Boolean.toString(set.add(x));
+        } catch (IllegalArgumentException e) {
+            return "rejected";
+        }
+    }
+
+    /**
+     * Applies random updates to a mutable set and a tree set, directly and through a view of each,
+     * comparing the sets, the views and snapshots taken meanwhile.
+     */
+    private void mutable() {
+        for (int it = 0; it < iterations; it++) {
+            Comparator<Integer> comparator = random.nextBoolean() ? null : Comparator.reverseOrder();
+            NavigableSet<Integer> expected = new TreeSet<>(comparator);
+            MutableArraySet<Integer> actual = new MutableArraySet<>(comparator);
+            List<Integer> probes = new ArrayList<>();
+            int range = 1 + random.nextInt(1000);
+            for (int i = -1; i <= range; i++) {
+                probes.add(i);
+            }
+            int low = random.nextInt(range);
+            int high = random.nextInt(range);
+            if ((comparator == null) == (low > high)) {
+                int t = low;
+                low = high;
+                high = t;
+            }
+            boolean lowInclusive = random.nextBoolean();
+            boolean highInclusive = random.nextBoolean();
+            int kind = random.nextInt(4);
+            NavigableSet<Integer> expectedView = view(expected, kind, low, lowInclusive, high, highInclusive);
+            NavigableSet<Integer> actualView = view(actual, kind, low, lowInclusive, high, highInclusive);
+            for (int op = randomSize(); op > 0; op--) {
+                Integer x = random.nextInt(range);
+                boolean direct = random.nextBoolean();
+                NavigableSet<Integer> e = direct ? expected : expectedView;
+                NavigableSet<Integer> a = direct ? actual : actualView;
+                switch (random.nextInt(10)) {
+                    case 0:
+                        check(Objects.equals(e.pollFirst(), a.pollFirst()), "pollFirst differs");
+                        break;
+                    case 1:
+                        check(Objects.equals(e.pollLast(), a.pollLast()), "pollLast differs");
+                        break;
+                    case 2:
+                    case 3:
+                        check(e.remove(x) == a.remove(x), "remove of " + x + " differs");
+                        break;
+                    default:
+                        check(add(e, x).equals(add(a, x)), "add of " + x + " differs");
+                }
+                if (random.nextInt(100) == 0) {
+                    compare("mutable set snapshot", expected, actual.snapshot(), probes);
+                }
+                if (random.nextInt(50) == 0) {
+                    compare("mutable set view", expectedView, actualView, probes);
+                }
+            }
+            compare("mutable set", expected, actual, probes);
+            compare("mutable set view", expectedView, actualView, probes);
+            check(expected.size() == actual.size() && expectedView.size() == actualView.size(), "mutable set size differs");
+        }
+    }
+
+    /**
+     * Writes keys with duplicates by {@link MappedSetWriter} and compares the mapped sets and their views.
+     * A write of unsorted keys must fail and leave a file that cannot be opened.
+     */
+    private void mapped() throws IOException {
+        Path longFile = dir.resolve("longs.bin");
+        Path uuidFile = dir.resolve("uuids.bin");
+        for (int it = 0; it < iterations; it++) {
+            TreeSet<Long> longs = new TreeSet<>();
+            TreeSet<UUID> uuids = new TreeSet<>();
+            for (int i = randomSize(); i > 0; i--) {
+                longs.add(randomLong());
+                uuids.add(new UUID(random.nextInt(3) - 1, randomLong()));
+            }
+            MappedSetWriter.write(longFile, longs.stream().flatMapToLong(x -> LongStream.of(x, x)));
+            MappedSetWriter.write(uuidFile, uuids.stream());
+            List<Long> longProbes = new ArrayList<>();
+            for (long x : longs) {
+                longProbes.add(x);
+                longProbes.add(x + 1);
+            }
+            List<UUID> uuidProbes = new ArrayList<>();
+            for (UUID x : uuids) {
+                uuidProbes.add(x);
+                uuidProbes.add(new UUID(x.getMostSignificantBits(), x.getLeastSignificantBits() + 1));
+            }
+            MappedLongArraySet mappedLongs = MappedLongArraySet.open(longFile);
+            compare("mapped longs", longs, mappedLongs, longProbes);
+            compare("mapped uuids", uuids, MappedUuidArraySet.open(uuidFile), uuidProbes);
+            if (!longs.isEmpty()) {
+                long low = longProbes.get(random.nextInt(longProbes.size()));
+                long high = longProbes.get(random.nextInt(longProbes.size()));
+                if (low > high) {
+                    long t = low;
+                    low = high;
+                    high = t;
+                }
+                compare("mapped long view", longs.subSet(low, true, high, false), mappedLongs.subSet(low, true, high, false), longProbes);
+                for (long x : longs) {
+                    check(mappedLongs.floor(x, x - 1) == x && mappedLongs.contains(x), "primitive lookup of " + x + " differs");
+                }
+            }
+        }
+        try {
+            MappedSetWriter.write(longFile, LongStream.of(1, 3, 2));
+            check(false, "unsorted keys are written");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            MappedLongArraySet.open(longFile);
+            check(false, "file of a failed write is opened");
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -4,21 +4,106 @@ import info.kgeorgiy.java.advanced.concurrent.*;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class IterativeParallelism implements ScalarIP, ListIP {
+    /**
+     * Number of elements between checks whether another block has decided the result of {@link #any}.
+     */
+    private static final int CHECK_INTERVAL = 1024;
 
     private final ParallelMapper myMapper;
+    private final ForkJoinPool pool;
+    private final int leafSize;
 
     public IterativeParallelism(ParallelMapper mapper) {
         this.myMapper = mapper;
+        pool = null;
+        leafSize = 0;
     }
 
     public IterativeParallelism() {
+        this((ParallelMapper) null);
+    }
+
+    /**
+     * Creates fork-join based parallelism on the common pool, see {@link #IterativeParallelism(ForkJoinPool, int)}.
+     */
+    public IterativeParallelism(int leafSize) {
+        this(ForkJoinPool.commonPool(), leafSize);
+    }
+
+    /**
+     * Creates parallelism that splits lists into blocks of at most <tt>leafSize</tt> elements processed
+     * by the pool, which steals halves of the remaining blocks for idle threads. Calls share the pool
+     * instead of starting threads, and the number of threads passed to them is only checked to be positive.
+     * Unlike the calls of thread-based parallelism, which throw {@link InterruptedException} when interrupted,
+     * the calls wait for the pool uninterruptibly.
+     */
+    public IterativeParallelism(ForkJoinPool pool, int leafSize) {
+        if (leafSize <= 0) {
+            throw new IllegalArgumentException("Leaf size should be positive");
+        }
         myMapper = null;
+        this.pool = Objects.requireNonNull(pool);
+        this.leafSize = leafSize;
+    }
+
+    /**
+     * Applies the mapper to the blocks of <tt>leafSize</tt> elements of the range, splitting it in halves
+     * at block boundaries, and stores the result of every block at its index.
+     */
+    private static class BlockTask<T, R> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends T> list;
+        private final Function<? super Stream<? extends T>, ? extends R> mapper;
+        private final Object[] res;
+        private final int leafSize;
+        private final int from;
+        private final int to;
+
+        BlockTask(List<? extends T> list, Function<? super Stream<? extends T>, ? extends R> mapper,
+                  Object[] res, int leafSize, int from, int to) {
+            this.list = list;
+            this.mapper = mapper;
+            this.res = res;
+            this.leafSize = leafSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                res[from / leafSize] = mapper.apply(list.subList(from, to).stream());
+            } else {
+                int mid = from + (to - from + leafSize - 1) / leafSize / 2 * leafSize;
+                invokeAll(new BlockTask<>(list, mapper, res, leafSize, from, mid),
+                        new BlockTask<>(list, mapper, res, leafSize, mid, to));
+            }
+        }
+    }
+
+    /**
+     * Runs the mapper on the blocks of the list in the pool and collects their results in order.
+     */
+    @SuppressWarnings("unchecked")
+    private <T, R> R forkJoin(final List<? extends T> list,
+                              final Function<? super Stream<? extends T>, ? extends R> mapper,
+                              final Function<? super Stream<? extends R>, ? extends R> resultCollector) {
+        if (list.size() <= leafSize) {
+            return resultCollector.apply(Stream.of(mapper.apply(list.stream())));
+        }
+        final Object[] res = new Object[(list.size() + leafSize - 1) / leafSize];
+        pool.invoke(new BlockTask<>(list, mapper, res, leafSize, 0, list.size()));
+        return resultCollector.apply(Arrays.stream(res).map(r -> (R) r));
     }
 
     private <T, R> R baseTask(int threadNumber, final List<? extends T> list,
@@ -27,6 +112,9 @@ public class IterativeParallelism implements ScalarIP, ListIP {
         if (threadNumber <= 0) {
             throw new IllegalArgumentException("Number of threads should be positive");
         }
+        if (pool != null) {
+            return forkJoin(list, mapper, resultCollector);
+        }
         threadNumber = Math.max(1, Math.min(threadNumber, list.size()));
         final List<Stream<? extends T>> subTasks = new ArrayList<>();
         final int blockSize = list.size() / threadNumber;
@@ -83,18 +171,35 @@ public class IterativeParallelism implements ScalarIP, ListIP {
 
     @Override
     public <T> boolean all(int threadNumber, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        return baseTask(threadNumber, list,
-                stream -> stream.allMatch(predicate),
-                stream -> stream.allMatch(Boolean::booleanValue));
+        return !any(threadNumber, list, predicate.negate());
     }
 
     @Override
     public <T> boolean any(int threadNumber, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
+        final AtomicBoolean found = new AtomicBoolean();
         return baseTask(threadNumber, list,
-                stream -> stream.anyMatch(predicate),
+                stream -> anyMatch(stream, predicate, found),
                 stream -> stream.anyMatch(Boolean::booleanValue));
     }
 
+    /**
+     * Returns whether an element of the block matches the predicate. Blocks share the flag, which is set
+     * by the first match; the others check it every {@link #CHECK_INTERVAL} elements and stop once it is set.
+     */
+    private static <T> boolean anyMatch(Stream<? extends T> stream, Predicate<? super T> predicate, AtomicBoolean found) {
+        final Iterator<? extends T> iterator = stream.iterator();
+        for (int i = 0; iterator.hasNext(); i++) {
+            if (i % CHECK_INTERVAL == 0 && found.get()) {
+                return false;
+            }
+            if (predicate.test(iterator.next())) {
+                found.set(true);
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public String join(int threadNumber, List<?> list) throws InterruptedException {
         return baseTask(threadNumber, list,
@@ -0,0 +1,150 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hashes files with {@link AsynchronousFileChannel} keeping at most <tt>inFlight</tt> files open.
+ * Every file has one outstanding read at a time and its hasher is updated from the completion handler,
+ * so the number of threads does not grow with the number of pending reads.
+ */
+class AsyncWalk extends OrderedWalk {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ExecutorService completions;
+    private final Semaphore permits;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final Queue<Hasher> hashers = new ConcurrentLinkedQueue<>();
+
+    AsyncWalk(OutputSink writer, int inFlight, int threads, int capacity, HashEngine engine, HashCache cache) {
+        super(writer, capacity, engine, cache);
+        completions = Executors.newFixedThreadPool(threads);
+        permits = new Semaphore(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+            buffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+    }
+
+    @Override
+    Future<byte[]> hash(Path path, BasicFileAttributes attrs) throws InterruptedException {
+        HashCache.Record record = null;
+        if (cache != null) {
+            try {
+                record = cache.lookup(path, attrs);
+            } catch (IOException | SecurityException e) {
+                engine.stats().failed();
+                return CompletableFuture.completedFuture(new byte[engine.length()]);
+            }
+            if (record.hash != null) {
+                return CompletableFuture.completedFuture(record.hash);
+            }
+        }
+
+        permits.acquire();
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(path, Collections.singleton(StandardOpenOption.READ), completions);
+        } catch (IOException | SecurityException | UnsupportedOperationException e) {
+            permits.release();
+            engine.stats().failed();
+            return CompletableFuture.completedFuture(new byte[engine.length()]);
+        }
+        FileRead read = new FileRead(path, channel, record);
+        read.next();
+        return read.result;
+    }
+
+    @Override
+    void shutdown() {
+        completions.shutdownNow();
+    }
+
+    private class FileRead implements CompletionHandler<Integer, Void> {
+        final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private final Path path;
+        private final AsynchronousFileChannel channel;
+        private final HashCache.Record record;
+        private final ByteBuffer buffer;
+        private final Hasher hasher;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private long position;
+
+        FileRead(Path path, AsynchronousFileChannel channel, HashCache.Record record) {
+            this.path = path;
+            this.channel = channel;
+            this.record = record;
+            buffer = buffers.poll();
+            Hasher free = hashers.poll();
+            hasher = free == null ? engine.newHasher() : free;
+            hasher.reset();
+        }
+
+        void next() {
+            buffer.clear();
+            try {
+                channel.read(buffer, position, null, this);
+            } catch (RuntimeException e) {
+                finish(null);
+            } catch (Error e) {
+                finish(null);
+                throw e;
+            }
+        }
+
+        @Override
+        public void completed(Integer read, Void attachment) {
+            try {
+                if (read < 0) {
+                    byte[] digest = new byte[engine.length()];
+                    engine.digest(path, hasher, position, digest, 0);
+                    if (record != null) {
+                        cache.store(record, digest);
+                    }
+                    finish(digest);
+                    return;
+                }
+                position += read;
+                buffer.flip();
+                hasher.update(buffer);
+            } catch (RuntimeException | Error e) {
+                finish(null);
+                throw e;
+            }
+            next();
+        }
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            finish(null);
+        }
+
+        /**
+         * Returns the resources and completes the result, only the first call has effect.
+         */
+        private void finish(byte[] digest) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            buffers.add(buffer);
+            hashers.add(hasher);
+            permits.release();
+            if (digest == null) {
+                engine.stats().failed();
+            }
+            result.complete(digest == null ? new byte[engine.length()] : digest);
+        }
+    }
+}
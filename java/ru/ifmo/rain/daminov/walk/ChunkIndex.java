@@ -0,0 +1,98 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects chunks produced by {@link ChunkingHasher}. Every chunk is written to the index as
+ * <tt>hash offset length path</tt>; duplicates are accumulated for the dedup summary.
+ */
+class ChunkIndex implements AutoCloseable {
+    private final BufferedWriter writer;
+    private final Map<Long, Chunk> chunks = new HashMap<>();
+    private long totalChunks;
+    private long totalBytes;
+    private long uniqueBytes;
+    private IOException writeError;
+
+    private ChunkIndex(BufferedWriter writer) {
+        this.writer = writer;
+    }
+
+    static ChunkIndex open(Path file) throws IOException {
+        return new ChunkIndex(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+
+    synchronized void add(Path path, ChunkingHasher hasher) {
+        for (int i = 0; i < hasher.chunks(); i++) {
+            long hash = hasher.chunkHash(i);
+            int length = hasher.chunkLength(i);
+            totalChunks++;
+            totalBytes += length;
+            Chunk chunk = chunks.get(hash);
+            if (chunk == null) {
+                chunks.put(hash, new Chunk(hash, length));
+                uniqueBytes += length;
+            } else {
+                chunk.count++;
+            }
+            if (writeError == null) {
+                try {
+                    writer.write(String.format("%016x %d %d %s", hash, hasher.chunkOffset(i), length, path));
+                    writer.newLine();
+                } catch (IOException e) {
+                    writeError = e;
+                }
+            }
+        }
+    }
+
+    synchronized void printSummary(PrintStream out, int top) {
+        out.println(String.format("Chunks: %d total, %d unique", totalChunks, chunks.size()));
+        out.println(String.format("Bytes: %d total, %d unique, dedup ratio %.2f",
+                totalBytes, uniqueBytes, uniqueBytes == 0 ? 1.0 : (double) totalBytes / uniqueBytes));
+        List<Chunk> duplicated = new ArrayList<>();
+        for (Chunk chunk : chunks.values()) {
+            if (chunk.count > 1) {
+                duplicated.add(chunk);
+            }
+        }
+        duplicated.sort(Comparator.comparingLong(Chunk::saved).reversed());
+        out.println("Top duplicated chunks:");
+        for (Chunk chunk : duplicated.subList(0, Math.min(top, duplicated.size()))) {
+            out.println(String.format("  %016x %d bytes x %d", chunk.hash, chunk.length, chunk.count));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private static class Chunk {
+        final long hash;
+        final int length;
+        long count = 1;
+
+        Chunk(long hash, int length) {
+            this.hash = hash;
+            this.length = length;
+        }
+
+        long saved() {
+            return (count - 1) * length;
+        }
+    }
+}
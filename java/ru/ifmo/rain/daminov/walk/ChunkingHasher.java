@@ -0,0 +1,132 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Hasher decorator that also splits the input into content-defined chunks with a gear rolling hash.
+ * A boundary is placed where the high {@link #MASK_BITS} bits of the rolling hash are zero, but not before
+ * {@link #MIN_CHUNK} and not after {@link #MAX_CHUNK} bytes. The low bits of the hash depend only on the last
+ * few bytes, while the high ones depend on the last 64. Every chunk is identified by its xxHash64.
+ */
+class ChunkingHasher implements Hasher {
+    static final int MIN_CHUNK = 1 << 11;
+    static final int MAX_CHUNK = 1 << 16;
+    private static final int MASK_BITS = 13;
+    private static final long MASK = ((1L << MASK_BITS) - 1) << (64 - MASK_BITS);
+    private static final long[] GEAR = new long[256];
+
+    static {
+        long seed = 0x5EED5EED5EED5EEDL;
+        for (int i = 0; i < GEAR.length; i++) {
+            long z = (seed += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private final Hasher whole;
+    private final Hasher chunk = new XxHash64Hasher();
+    private final byte[] digest = new byte[8];
+    private long gear;
+    private long position;
+    private long chunkStart;
+
+    private int count;
+    private long[] hashes = new long[16];
+    private long[] offsets = new long[16];
+    private int[] lengths = new int[16];
+
+    ChunkingHasher(Hasher whole) {
+        this.whole = whole;
+    }
+
+    @Override
+    public int length() {
+        return whole.length();
+    }
+
+    @Override
+    public void reset() {
+        whole.reset();
+        chunk.reset();
+        gear = 0;
+        position = 0;
+        chunkStart = 0;
+        count = 0;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        whole.update(buffer.duplicate());
+        int from = buffer.position();
+        int limit = buffer.limit();
+        int start = from;
+        long g = gear;
+        for (int i = from; i < limit; i++) {
+            g = (g << 1) + GEAR[buffer.get(i) & 0xff];
+            long length = position + (i - from) + 1 - chunkStart;
+            if (length >= MIN_CHUNK && ((g & MASK) == 0 || length >= MAX_CHUNK)) {
+                chunk.update(range(buffer, start, i + 1));
+                finishChunk(length);
+                start = i + 1;
+                g = 0;
+            }
+        }
+        chunk.update(range(buffer, start, limit));
+        gear = g;
+        position += limit - from;
+        buffer.position(limit);
+    }
+
+    private static ByteBuffer range(ByteBuffer buffer, int from, int to) {
+        ByteBuffer range = buffer.duplicate();
+        range.limit(to);
+        range.position(from);
+        return range;
+    }
+
+    private void finishChunk(long length) {
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        chunk.digest(digest, 0);
+        chunk.reset();
+        long hash = 0;
+        for (byte b : digest) {
+            hash = (hash << 8) | (b & 0xff);
+        }
+        hashes[count] = hash;
+        offsets[count] = chunkStart;
+        lengths[count] = (int) length;
+        count++;
+        chunkStart += length;
+    }
+
+    @Override
+    public void digest(byte[] out, int offset) {
+        if (position > chunkStart) {
+            finishChunk(position - chunkStart);
+        }
+        whole.digest(out, offset);
+    }
+
+    int chunks() {
+        return count;
+    }
+
+    long chunkHash(int i) {
+        return hashes[i];
+    }
+
+    long chunkOffset(int i) {
+        return offsets[i];
+    }
+
+    int chunkLength(int i) {
+        return lengths[i];
+    }
+}
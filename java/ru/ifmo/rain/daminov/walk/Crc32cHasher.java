@@ -0,0 +1,101 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli). Uses the intrinsified <tt>java.util.zip.CRC32C</tt> when the runtime has it
+ * and a table-driven implementation otherwise.
+ */
+class Crc32cHasher implements Hasher {
+    private static final int POLY = 0x82F63B78;
+    private static final int[] TABLE = new int[256];
+    private static final MethodHandle CREATE;
+    private static final MethodHandle UPDATE;
+
+    static {
+        for (int i = 0; i < TABLE.length; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc >>> 1) ^ (POLY & -(crc & 1));
+            }
+            TABLE[i] = crc;
+        }
+
+        MethodHandle create = null;
+        MethodHandle update = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            create = lookup.findConstructor(Class.forName("java.util.zip.CRC32C"), MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Checksum.class));
+            update = lookup.findVirtual(Checksum.class, "update", MethodType.methodType(void.class, ByteBuffer.class));
+        } catch (ReflectiveOperationException e) {
+            create = null;
+            update = null;
+        }
+        CREATE = create;
+        UPDATE = update;
+    }
+
+    private final Checksum checksum;
+    private final byte[] scratch;
+    private int crc;
+
+    Crc32cHasher() {
+        checksum = CREATE == null ? null : create();
+        scratch = checksum == null ? new byte[1 << 13] : null;
+        reset();
+    }
+
+    private static Checksum create() {
+        try {
+            return (Checksum) CREATE.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot create CRC32C", e);
+        }
+    }
+
+    @Override
+    public int length() {
+        return 4;
+    }
+
+    @Override
+    public void reset() {
+        if (checksum != null) {
+            checksum.reset();
+        }
+        crc = -1;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        if (checksum != null) {
+            try {
+                UPDATE.invokeExact(checksum, buffer);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+        int c = crc;
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), scratch.length);
+            buffer.get(scratch, 0, length);
+            for (int i = 0; i < length; i++) {
+                c = (c >>> 8) ^ TABLE[(c ^ scratch[i]) & 0xff];
+            }
+        }
+        crc = c;
+    }
+
+    @Override
+    public void digest(byte[] out, int offset) {
+        HashAlgorithm.putLong(checksum != null ? checksum.getValue() : ~crc & 0xffffffffL, out, offset, 4);
+    }
+}
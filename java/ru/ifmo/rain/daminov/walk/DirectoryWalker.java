@@ -0,0 +1,189 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Depth-first traversal over {@link DirectoryStream}s with an explicit stack of open directories instead of recursion.
+ * Entries are streamed, so huge directories are never listed into memory. Attributes are read only
+ * when requested; otherwise an entry costs a single directory check and the handler receives <tt>null</tt>.
+ * Symbolic links are not followed. Visit order and error reporting match {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)}:
+ * a directory that cannot be opened is reported as a failed file, an error while reading it aborts the walk.
+ */
+class DirectoryWalker {
+    interface FileHandler {
+        void file(Path path, BasicFileAttributes attrs) throws IOException;
+
+        void fileFailed(Path path, IOException e) throws IOException;
+    }
+
+    private final boolean attributes;
+
+    DirectoryWalker(boolean attributes) {
+        this.attributes = attributes;
+    }
+
+    void walk(Path root, FileHandler handler) throws IOException {
+        Deque<Directory> stack = new ArrayDeque<>();
+        try {
+            enter(root, handler, stack);
+            while (!stack.isEmpty()) {
+                Directory top = stack.peek();
+                Path entry;
+                try {
+                    entry = top.iterator.hasNext() ? top.iterator.next() : null;
+                } catch (DirectoryIteratorException e) {
+                    throw e.getCause();
+                }
+                if (entry == null) {
+                    stack.pop().stream.close();
+                } else {
+                    enter(entry, handler, stack);
+                }
+            }
+        } finally {
+            while (!stack.isEmpty()) {
+                try {
+                    stack.pop().stream.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void enter(Path path, FileHandler handler, Deque<Directory> stack) throws IOException {
+        if (visit(path, handler)) {
+            DirectoryStream<Path> stream = open(path, handler);
+            if (stream != null) {
+                stack.push(new Directory(stream));
+            }
+        }
+    }
+
+    /**
+     * Reports the entry to the handler unless it is a directory.
+     *
+     * @return whether the entry is a directory to descend into
+     */
+    private boolean visit(Path path, FileHandler handler) throws IOException {
+        BasicFileAttributes attrs = null;
+        boolean directory;
+        if (attributes) {
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                handler.fileFailed(path, e);
+                return false;
+            }
+            directory = attrs.isDirectory();
+        } else {
+            directory = Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+        }
+        if (!directory) {
+            handler.file(path, attrs);
+        }
+        return directory;
+    }
+
+    private static DirectoryStream<Path> open(Path directory, FileHandler handler) throws IOException {
+        try {
+            return Files.newDirectoryStream(directory);
+        } catch (IOException e) {
+            handler.fileFailed(directory, e);
+            return null;
+        }
+    }
+
+    /**
+     * Walks the tree forking every subdirectory to the pool. The handler is called concurrently
+     * and in no particular order.
+     */
+    void walk(Path root, FileHandler handler, ForkJoinPool pool) throws IOException {
+        if (visit(root, handler)) {
+            try {
+                pool.invoke(new DirectoryTask(root, handler));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final FileHandler handler;
+
+        DirectoryTask(Path directory, FileHandler handler) {
+            this.directory = directory;
+            this.handler = handler;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> children = new ArrayList<>();
+            try {
+                DirectoryStream<Path> stream = open(directory, handler);
+                if (stream != null) {
+                    try {
+                        for (Path entry : stream) {
+                            if (visit(entry, handler)) {
+                                DirectoryTask child = new DirectoryTask(entry, handler);
+                                child.fork();
+                                children.add(child);
+                            }
+                        }
+                    } catch (DirectoryIteratorException e) {
+                        throw e.getCause();
+                    } finally {
+                        stream.close();
+                    }
+                }
+            } catch (IOException e) {
+                throw joinAfter(children, new UncheckedIOException(e));
+            } catch (RuntimeException e) {
+                throw joinAfter(children, e);
+            }
+            for (DirectoryTask child : children) {
+                child.join();
+            }
+        }
+
+        /**
+         * Waits for the children after the failure, their failures are added to it as suppressed.
+         */
+        private <T extends Throwable> T joinAfter(List<DirectoryTask> children, T failure) {
+            for (DirectoryTask child : children) {
+                try {
+                    child.join();
+                } catch (RuntimeException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+            return failure;
+        }
+    }
+
+    private static class Directory {
+        final DirectoryStream<Path> stream;
+        final Iterator<Path> iterator;
+
+        Directory(DirectoryStream<Path> stream) {
+            this.stream = stream;
+            this.iterator = stream.iterator();
+        }
+    }
+}
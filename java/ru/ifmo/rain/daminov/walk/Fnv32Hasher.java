@@ -0,0 +1,56 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 32-bit FNV-1: multiply by the prime, then xor the byte.
+ */
+class Fnv32Hasher implements Hasher {
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int FNV_START = 0x811c9dc5;
+
+    private final byte[] scratch = new byte[1 << 13];
+    private int hash = FNV_START;
+
+    @Override
+    public int length() {
+        return 4;
+    }
+
+    @Override
+    public void reset() {
+        hash = FNV_START;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        int h = hash;
+        if (buffer.hasArray()) {
+            h = update(h, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                int length = Math.min(buffer.remaining(), scratch.length);
+                buffer.get(scratch, 0, length);
+                h = update(h, scratch, 0, length);
+            }
+        }
+        hash = h;
+    }
+
+    private static int update(int h, byte[] data, int from, int length) {
+        for (int i = from, to = from + length; i < to; i++) {
+            h = (h * FNV_PRIME) ^ (data[i] & 0xff);
+        }
+        return h;
+    }
+
+    int value() {
+        return hash;
+    }
+
+    @Override
+    public void digest(byte[] out, int offset) {
+        HashAlgorithm.putLong(hash, out, offset, 4);
+    }
+}
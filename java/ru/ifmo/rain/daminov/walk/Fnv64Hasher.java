@@ -0,0 +1,52 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 64-bit FNV-1, the wide variant of {@link Fnv32Hasher}.
+ */
+class Fnv64Hasher implements Hasher {
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long FNV_START = 0xcbf29ce484222325L;
+
+    private final byte[] scratch = new byte[1 << 13];
+    private long hash = FNV_START;
+
+    @Override
+    public int length() {
+        return 8;
+    }
+
+    @Override
+    public void reset() {
+        hash = FNV_START;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        long h = hash;
+        if (buffer.hasArray()) {
+            h = update(h, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                int length = Math.min(buffer.remaining(), scratch.length);
+                buffer.get(scratch, 0, length);
+                h = update(h, scratch, 0, length);
+            }
+        }
+        hash = h;
+    }
+
+    private static long update(long h, byte[] data, int from, int length) {
+        for (int i = from, to = from + length; i < to; i++) {
+            h = (h * FNV_PRIME) ^ (data[i] & 0xff);
+        }
+        return h;
+    }
+
+    @Override
+    public void digest(byte[] out, int offset) {
+        HashAlgorithm.putLong(hash, out, offset, 8);
+    }
+}
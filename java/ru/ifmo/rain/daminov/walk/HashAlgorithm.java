@@ -0,0 +1,40 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Hash functions available to the walker.
+ */
+public enum HashAlgorithm {
+    FNV32(Fnv32Hasher::new),
+    FNV64(Fnv64Hasher::new),
+    XXHASH64(XxHash64Hasher::new),
+    CRC32C(Crc32cHasher::new),
+    SHA256(Sha256Hasher::new);
+
+    private final Supplier<Hasher> factory;
+
+    HashAlgorithm(Supplier<Hasher> factory) {
+        this.factory = factory;
+    }
+
+    public Hasher create() {
+        return factory.get();
+    }
+
+    public static HashAlgorithm forName(String name) {
+        try {
+            return valueOf(name.replace("-", "").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown hash algorithm " + name);
+        }
+    }
+
+    static void putLong(long value, byte[] out, int offset, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            out[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
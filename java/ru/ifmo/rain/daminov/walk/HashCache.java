@@ -0,0 +1,151 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes of files from the previous run keyed by absolute path. An entry is reused only while
+ * size, modification time and file key of the file are unchanged. The file key is stored as its
+ * string form, which on Unix holds the device and inode numbers, so a replaced file does not match.
+ * {@link #save()} rewrites the index atomically with the entries used during this run.
+ */
+class HashCache {
+    private static final int MAGIC = 0x57414c4b;
+    private static final int VERSION = 4;
+
+    private final Path file;
+    private final HashEngine engine;
+    private final Map<String, Record> previous;
+    private final Map<String, Record> current = new ConcurrentHashMap<>();
+
+    private HashCache(Path file, HashEngine engine, Map<String, Record> previous) {
+        this.file = file;
+        this.engine = engine;
+        this.previous = previous;
+    }
+
+    static HashCache load(Path file, HashEngine engine) {
+        Map<String, Record> records = new ConcurrentHashMap<>();
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("unsupported format");
+                }
+                if (!in.readUTF().equals(engine.algorithm().name())) {
+                    throw new IOException("built with another hash algorithm");
+                }
+                for (int count = in.readInt(); count > 0; count--) {
+                    Record record = new Record(readString(in), in.readLong(), in.readLong(), readString(in), new byte[engine.length()]);
+                    in.readFully(record.hash);
+                    records.put(record.key, record);
+                }
+            } catch (IOException | SecurityException e) {
+                System.out.println("Ignoring hash cache " + file + ", " + e.getMessage());
+                records.clear();
+            }
+        }
+        return new HashCache(file, engine, records);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}, unlike {@link DataInput#readUTF()} it has no length limit.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    byte[] getHash(Path path, BasicFileAttributes attrs) throws IOException {
+        Record record = lookup(path, attrs);
+        if (record.hash == null) {
+            store(record, engine.hash(path));
+        }
+        return record.hash;
+    }
+
+    /**
+     * Returns the record for the file. It holds the cached hash if the file is unchanged
+     * and no hash otherwise; in the latter case the hash should be passed to {@link #store}.
+     */
+    Record lookup(Path path, BasicFileAttributes attrs) throws IOException {
+        if (attrs == null || attrs.isSymbolicLink()) {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        }
+        String key = path.toAbsolutePath().toString();
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        String fileKey = attrs.fileKey() == null ? "" : attrs.fileKey().toString();
+
+        Record record = previous.get(key);
+        if (record != null && record.size == size && record.modified == modified && record.fileKey.equals(fileKey)) {
+            current.put(key, record);
+            engine.stats().cached();
+            return record;
+        }
+        return new Record(key, size, modified, fileKey, null);
+    }
+
+    void store(Record record, byte[] hash) {
+        record.hash = hash;
+        current.put(record.key, record);
+    }
+
+    void save() throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(engine.algorithm().name());
+                out.writeInt(current.size());
+                for (Record record : current.values()) {
+                    writeString(out, record.key);
+                    out.writeLong(record.size);
+                    out.writeLong(record.modified);
+                    writeString(out, record.fileKey);
+                    out.write(record.hash);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static class Record {
+        final String key;
+        final long size;
+        final long modified;
+        final String fileKey;
+        byte[] hash;
+
+        Record(String key, long size, long modified, String fileKey, byte[] hash) {
+            this.key = key;
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Hashes file contents with one {@link Hasher} per thread. Files of at least {@link #MAP_THRESHOLD}
+ * bytes are mapped window by window, smaller ones are read through a per-thread direct buffer.
+ * With a {@link ChunkIndex} every hashed file is also split into chunks and reported to the index.
+ * Hashed files and bytes are counted in {@link #stats()}.
+ */
+final class HashEngine {
+    static final HashEngine FNV32 = new HashEngine(HashAlgorithm.FNV32);
+
+    private static final long MAP_THRESHOLD = 1 << 20;
+    private static final long MAP_WINDOW = 1 << 26;
+    static final int CHUNK = 1 << 16;
+
+    private static final ThreadLocal<ByteBuffer> DIRECT = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK));
+
+    private final HashAlgorithm algorithm;
+    private final int length;
+    private final ThreadLocal<Hasher> hashers;
+    private final ChunkIndex chunks;
+    private final WalkStats stats;
+
+    HashEngine(HashAlgorithm algorithm) {
+        this(algorithm, null, new WalkStats());
+    }
+
+    HashEngine(HashAlgorithm algorithm, ChunkIndex chunks, WalkStats stats) {
+        this.algorithm = algorithm;
+        this.length = algorithm.create().length();
+        this.chunks = chunks;
+        this.stats = stats;
+        this.hashers = ThreadLocal.withInitial(this::newHasher);
+    }
+
+    /**
+     * Creates a hasher for callers that feed file contents themselves, see {@link #digest}.
+     */
+    Hasher newHasher() {
+        return chunks == null ? algorithm.create() : new ChunkingHasher(algorithm.create());
+    }
+
+    HashAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    int length() {
+        return length;
+    }
+
+    WalkStats stats() {
+        return stats;
+    }
+
+    byte[] hash(Path path) throws IOException {
+        byte[] digest = new byte[length];
+        hash(path, digest, 0);
+        return digest;
+    }
+
+    void hash(Path path, byte[] digest, int offset) throws IOException {
+        Hasher hasher = hashers.get();
+        hasher.reset();
+        digest(path, hasher, read(path, hasher), digest, offset);
+    }
+
+    /**
+     * Completes hashing of the file of <tt>size</tt> bytes fed into a hasher from {@link #newHasher()}.
+     */
+    void digest(Path path, Hasher hasher, long size, byte[] digest, int offset) {
+        hasher.digest(digest, offset);
+        stats.hashed(size);
+        if (chunks != null) {
+            chunks.add(path, (ChunkingHasher) hasher);
+        }
+    }
+
+    static long read(Path path, Hasher hasher) throws IOException {
+        return read(path, hasher, DIRECT.get());
+    }
+
+    /**
+     * Feeds file contents to the hasher.
+     *
+     * @return number of bytes read
+     */
+    static long read(Path path, Hasher hasher, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            if (size >= MAP_THRESHOLD) {
+                for (; position < size; position += MAP_WINDOW) {
+                    hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position)));
+                }
+                channel.position(position);
+            }
+            // size() is only a hint: files may grow and procfs reports zero
+            buffer.clear();
+            for (int read; (read = channel.read(buffer)) >= 0; position += read) {
+                buffer.flip();
+                hasher.update(buffer);
+                buffer.clear();
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming hash function. A hasher is fed with {@link #update(ByteBuffer)} and may be reused
+ * for the next input after {@link #reset()}; its state after {@link #digest(byte[], int)} is unspecified.
+ */
+public interface Hasher {
+    /**
+     * Returns digest length in bytes.
+     */
+    int length();
+
+    /**
+     * Restores the initial state.
+     */
+    void reset();
+
+    /**
+     * Consumes all remaining bytes of the buffer.
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * Writes {@link #length()} bytes of digest of the consumed data, most significant byte first.
+     */
+    void digest(byte[] out, int offset);
+
+    default byte[] digest() {
+        byte[] out = new byte[length()];
+        digest(out, 0);
+        return out;
+    }
+}
@@ -2,32 +2,75 @@ package ru.ifmo.rain.daminov.walk;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.IllegalFormatException;
 
 import static ru.ifmo.rain.daminov.walk.RecursiveWalk.getHash;
 
-public class MyFileVisitor extends SimpleFileVisitor<Path> {
+/**
+ * Writes the hash of every visited file. Works both as a {@link java.nio.file.FileVisitor}
+ * for {@link java.nio.file.Files#walkFileTree} and as a {@link DirectoryWalker.FileHandler}.
+ */
+public class MyFileVisitor extends SimpleFileVisitor<Path> implements DirectoryWalker.FileHandler {
     private BufferedWriter writer;
+    private OutputSink sink;
+    private HashEngine engine;
+    private HashCache cache;
+    private byte[] digest;
+    private byte[] zero;
 
     public MyFileVisitor(BufferedWriter wr) {
+        this(HashEngine.FNV32, null);
         writer = wr;
     }
 
+    MyFileVisitor(OutputSink wr, HashEngine engine, HashCache cache) {
+        this(engine, cache);
+        sink = wr;
+    }
+
+    private MyFileVisitor(HashEngine engine, HashCache cache) {
+        this.engine = engine;
+        this.cache = cache;
+        digest = new byte[engine.length()];
+        zero = new byte[engine.length()];
+    }
+
     @Override
     public FileVisitResult visitFile(Path path, BasicFileAttributes basicFileAttributes) throws IOException {
-        writer.write(String.format("%08x", getHash(path)) + " " + path);
+        file(path, basicFileAttributes);
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path path, IOException e) throws IOException {
-        writer.write(String.format("%08x", 0) + " " + path);
+        fileFailed(path, e);
         return FileVisitResult.CONTINUE;
     }
+
+    @Override
+    public void file(Path path, BasicFileAttributes basicFileAttributes) throws IOException {
+        write(getHash(engine, path, basicFileAttributes, cache, digest), path);
+    }
+
+    @Override
+    public void fileFailed(Path path, IOException e) throws IOException {
+        engine.stats().failed();
+        write(zero, path);
+    }
+
+    private void write(byte[] hash, Path path) throws IOException {
+        if (sink != null) {
+            sink.write(hash, path);
+            return;
+        }
+        StringBuilder line = new StringBuilder(2 * hash.length + 1);
+        for (byte b : hash) {
+            line.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        writer.write(line.append(' ').append(path).toString());
+        writer.newLine();
+    }
 }
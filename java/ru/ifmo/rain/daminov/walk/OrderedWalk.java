@@ -0,0 +1,192 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Walk whose files are hashed concurrently while a single writer thread prints results in discovery order.
+ * Traversal blocks once <tt>capacity</tt> results are waiting to be written.
+ */
+abstract class OrderedWalk implements AutoCloseable {
+    private static final Entry END = new Entry(null, null, -1, -1);
+
+    protected final HashEngine engine;
+    protected final HashCache cache;
+    private final BlockingQueue<Entry> pending;
+    private final Thread writerThread;
+    private final Visitor visitor = new Visitor();
+    private final DirectoryWalker walker;
+    private volatile IOException writeError;
+    private WalkJournal journal;
+
+    OrderedWalk(OutputSink writer, int capacity, HashEngine engine, HashCache cache) {
+        this.engine = engine;
+        this.cache = cache;
+        walker = new DirectoryWalker(cache != null);
+        pending = new ArrayBlockingQueue<>(capacity);
+        engine.stats().queue(pending::size);
+        writerThread = new Thread(() -> drain(writer), "walk-writer");
+        writerThread.start();
+    }
+
+    /**
+     * Starts hashing of the file, may block until there is capacity for it.
+     */
+    abstract Future<byte[]> hash(Path path, BasicFileAttributes attrs) throws InterruptedException;
+
+    /**
+     * Releases hashing resources once all results are written.
+     */
+    abstract void shutdown();
+
+    /**
+     * Sets the journal notified of written records, must be called before walking.
+     */
+    void journal(WalkJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Walks the root skipping its first <tt>skip</tt> records.
+     */
+    void walk(Path root, int index, long skip) throws IOException, InterruptedException {
+        visitor.start(index, skip);
+        try {
+            walker.walk(root, visitor);
+        } catch (InterruptedIOException e) {
+            throw new InterruptedException(e.getMessage());
+        }
+        pending.put(new Entry(null, null, index, -1));
+    }
+
+    void failed(String name, int index, long skip) throws InterruptedException {
+        if (skip == 0) {
+            engine.stats().failed();
+            pending.put(new Entry(name, CompletableFuture.completedFuture(new byte[engine.length()]), index, 1));
+        }
+        pending.put(new Entry(null, null, index, -1));
+    }
+
+    private void drain(OutputSink writer) {
+        try {
+            Entry entry;
+            while ((entry = pending.take()) != END) {
+                if (entry.name == null) {
+                    if (journal != null && writeError == null) {
+                        try {
+                            journal.rootDone(writer, entry.root);
+                        } catch (IOException e) {
+                            writeError = e;
+                        }
+                    }
+                    continue;
+                }
+                byte[] hash;
+                try {
+                    hash = entry.hash.get();
+                } catch (ExecutionException e) {
+                    engine.stats().failed();
+                    hash = new byte[engine.length()];
+                }
+                if (writeError == null) {
+                    try {
+                        writer.write(hash, entry.name);
+                        if (journal != null) {
+                            journal.written(writer, entry.root, entry.files);
+                        }
+                    } catch (IOException e) {
+                        writeError = e;
+                    }
+                }
+            }
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for all results to be written. If interrupted meanwhile, keeps the interrupt status
+     * and throws {@link InterruptedIOException}, pending results are lost.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            pending.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing results");
+        } finally {
+            shutdown();
+            writerThread.interrupt();
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    /**
+     * Result for the file <tt>name</tt> that is record number <tt>files</tt> of the root;
+     * entry without name marks the end of the root.
+     */
+    private static class Entry {
+        final String name;
+        final Future<byte[]> hash;
+        final int root;
+        final long files;
+
+        Entry(String name, Future<byte[]> hash, int root, long files) {
+            this.name = name;
+            this.hash = hash;
+            this.root = root;
+            this.files = files;
+        }
+    }
+
+    private class Visitor implements DirectoryWalker.FileHandler {
+        private int root;
+        private long skip;
+        private long files;
+
+        void start(int root, long skip) {
+            this.root = root;
+            this.skip = skip;
+            files = 0;
+        }
+
+        @Override
+        public void file(Path path, BasicFileAttributes attrs) throws IOException {
+            if (files++ >= skip) {
+                put(path, () -> hash(path, attrs));
+            }
+        }
+
+        @Override
+        public void fileFailed(Path path, IOException e) throws IOException {
+            if (files++ >= skip) {
+                engine.stats().failed();
+                put(path, () -> CompletableFuture.completedFuture(new byte[engine.length()]));
+            }
+        }
+
+        private void put(Path path, HashTask task) throws InterruptedIOException {
+            try {
+                pending.put(new Entry(path.toString(), task.start(), root, files));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while queueing " + path);
+            }
+        }
+    }
+
+    private interface HashTask {
+        Future<byte[]> start() throws InterruptedException;
+    }
+}
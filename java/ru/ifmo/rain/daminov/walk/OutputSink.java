@@ -0,0 +1,101 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes <tt>hex-digest name</tt> records in UTF-8 straight into a reusable direct buffer
+ * that is flushed to a {@link FileChannel}. Writing a record allocates nothing.
+ */
+class OutputSink implements AutoCloseable {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EOLN = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final int CAPACITY = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(CAPACITY);
+    private char[] chars = new char[256];
+
+    OutputSink(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    void write(byte[] digest, Object name) throws IOException {
+        for (byte b : digest) {
+            ensure(2);
+            buffer.put(HEX[(b >> 4) & 0xf]).put(HEX[b & 0xf]);
+        }
+        ensure(1);
+        buffer.put((byte) ' ');
+        encode(name.toString());
+        ensure(EOLN.length);
+        buffer.put(EOLN);
+    }
+
+    private void encode(String name) throws IOException {
+        int length = name.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        name.getChars(0, length, chars, 0);
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            ensure(4);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+                int cp = Character.toCodePoint(c, chars[++i]);
+                buffer.put((byte) (0xf0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (cp & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced the same way as the UTF-8 encoder does
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xe0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Flushes buffered records to the storage device.
+     *
+     * @return size of the durable output
+     */
+    long force() throws IOException {
+        flush();
+        channel.force(false);
+        return channel.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static ru.ifmo.rain.daminov.walk.RecursiveWalk.getHash;
+
+/**
+ * Hashes files on a fixed pool of threads.
+ */
+class ParallelWalk extends OrderedWalk {
+    private final ExecutorService hashers;
+
+    ParallelWalk(OutputSink writer, int threads, int capacity, HashEngine engine, HashCache cache) {
+        super(writer, capacity, engine, cache);
+        hashers = Executors.newFixedThreadPool(threads);
+    }
+
+    @Override
+    Future<byte[]> hash(Path path, BasicFileAttributes attrs) {
+        return hashers.submit(() -> getHash(engine, path, attrs, cache, new byte[engine.length()]));
+    }
+
+    @Override
+    void shutdown() {
+        hashers.shutdownNow();
+    }
+}
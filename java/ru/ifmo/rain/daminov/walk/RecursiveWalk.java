@@ -1,5 +1,6 @@
 package ru.ifmo.rain.daminov.walk;
 
+import javax.management.JMException;
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -7,26 +8,31 @@ import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.IllegalFormatException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 public class RecursiveWalk {
-    private static final long FNV_PRIME = 16777619L;
-    private static final long FNV_START = 2166136261L;
-    private static final long FNV_MOD = 4294967296L;
-
     public static void main(String[] args) {
-        if (args == null || args.length != 2) {
-            System.out.println("Expected 2 arguments!");
+        if (args == null || args.length < 2) {
+            System.out.println("Expected at least 2 arguments!");
         } else if (args[0] == null) {
             System.out.println("First argument null, not good(");
         } else if (args[1] == null) {
             System.out.println("Second argument null, not good(");
         } else {
-            walk(args, StandardCharsets.UTF_8);
+            WalkOptions options;
+            try {
+                options = WalkOptions.parse(args, 2);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid options, " + e.getMessage());
+                return;
+            }
+            walk(args, StandardCharsets.UTF_8, options);
         }
     }
 
-    private static void walk(String[] args, Charset charset) {
+    private static void walk(String[] args, Charset charset, WalkOptions options) {
         try {
             Path pathInput = Paths.get(args[0]);
             try {
@@ -43,18 +49,50 @@ public class RecursiveWalk {
                             System.out.println("Couldn't create output file, " + e.getMessage());
                         }
                     }
-                    try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[0]), charset))) {
-                        String file;
-                        while ((file = reader.readLine()) != null) {
-                            try {
-                                Path path = Paths.get(file);
-                                MyFileVisitor visitor = new MyFileVisitor(writer); // catch the IOException
-                                Files.walkFileTree(path, visitor);
-                            } catch (InvalidPathException e) {
-                                writer.write(String.format("%08x", 0) + " " + file);
-                            } catch (IOException e) {
-                                System.out.println("Unable to write to output file, " + e.getMessage());
-                            }
+                    ChunkIndex chunks = null;
+                    if (options.chunks != null) {
+                        try {
+                            chunks = ChunkIndex.open(options.chunks);
+                        } catch (IOException | SecurityException e) {
+                            System.out.println("Unable to open chunk index, " + e.getMessage());
+                            return;
+                        }
+                    }
+                    WalkJournal journal = null;
+                    if (options.journal != null) {
+                        try {
+                            journal = WalkJournal.open(options.journal, options.resume, Paths.get(args[0]), pathOutput, options.algorithm);
+                        } catch (IOException | SecurityException e) {
+                            System.out.println("Unable to open journal, " + e.getMessage());
+                            return;
+                        }
+                    }
+                    WalkStats stats = new WalkStats();
+                    if (options.statsPeriod > 0 || options.jmx) {
+                        try {
+                            stats.start(options.statsPeriod > 0 ? options.statsPeriod : 1, options.statsPeriod > 0 ? System.out : null, options.jmx);
+                        } catch (JMException | SecurityException e) {
+                            System.out.println("Unable to register walk statistics, " + e.getMessage());
+                        }
+                    }
+                    HashEngine engine = new HashEngine(options.algorithm, chunks, stats);
+                    HashCache cache = options.cache == null ? null : HashCache.load(options.cache, engine);
+                    try (OutputSink writer = new OutputSink(journal != null ? journal.openOutput(args[1]) : new FileOutputStream(args[1]).getChannel())) {
+                        if (options.inFlight > 0) {
+                            int threads = options.threads > 0 ? options.threads : Runtime.getRuntime().availableProcessors();
+                            walkOrdered(reader, new AsyncWalk(writer, options.inFlight, threads, options.queueCapacity, engine, cache), journal);
+                        } else if (options.maxOpen > 0) {
+                            walkOrdered(reader, new VirtualThreadWalk(writer, options.maxOpen, options.queueCapacity, engine, cache), journal);
+                        } else if (options.threads > 0 && options.unordered) {
+                            walkUnordered(reader, writer, options.threads, engine, cache);
+                        } else if (options.threads > 0) {
+                            walkOrdered(reader, new ParallelWalk(writer, options.threads, options.queueCapacity, engine, cache), journal);
+                        } else {
+                            walkSequential(reader, writer, engine, cache, journal);
+                        }
+                        if (journal != null && !Thread.currentThread().isInterrupted()) {
+                            writer.flush();
+                            journal.complete();
                         }
                     } catch (FileNotFoundException e) {
                         System.out.println("Unable to open stream for writing because file not found, " + e.getMessage());
@@ -63,6 +101,33 @@ public class RecursiveWalk {
                     } catch (IOException e) {
                         System.out.println("Unable to read from file, " + e.getMessage());
                     }
+                    try {
+                        stats.close();
+                    } catch (JMException e) {
+                        System.out.println("Unable to unregister walk statistics, " + e.getMessage());
+                    }
+                    if (journal != null) {
+                        try {
+                            journal.close();
+                        } catch (IOException e) {
+                            System.out.println("Unable to close journal, " + e.getMessage());
+                        }
+                    }
+                    if (cache != null) {
+                        try {
+                            cache.save();
+                        } catch (IOException | SecurityException e) {
+                            System.out.println("Unable to save hash cache, " + e.getMessage());
+                        }
+                    }
+                    if (chunks != null) {
+                        try {
+                            chunks.close();
+                        } catch (IOException e) {
+                            System.out.println("Unable to write chunk index, " + e.getMessage());
+                        }
+                        chunks.printSummary(System.out, options.topChunks);
+                    }
                 } catch (FileNotFoundException e) {
                     if (!Files.isRegularFile(pathInput)) {
                         System.out.println("Not found such input file, " + e.getMessage());
@@ -83,19 +148,114 @@ public class RecursiveWalk {
         }
     }
 
-    public static long getHash(Path path) {
-        long hash = FNV_START;
-        try (InputStream reader = new FileInputStream(path.toString())) {
-            int sz;
-            byte[] buffer = new byte[1024];
-            while ((sz = reader.read(buffer, 0, 1024)) >= 0) {
-                for (int i = 0; i < sz; i++) {
-                    hash = (hash * FNV_PRIME) % FNV_MOD ^ (buffer[i] & ((1 << 8) - 1));
+    private static void walkSequential(BufferedReader reader, OutputSink writer, HashEngine engine, HashCache cache, WalkJournal journal) throws IOException {
+        MyFileVisitor visitor = new MyFileVisitor(writer, engine, cache);
+        DirectoryWalker walker = new DirectoryWalker(cache != null);
+        String file;
+        for (int root = 0; (file = reader.readLine()) != null; root++) {
+            if (journal != null && journal.isDone(root)) {
+                continue;
+            }
+            try {
+                Path path = Paths.get(file);
+                walker.walk(path, journal == null ? visitor : journal.track(visitor, writer, root));
+            } catch (InvalidPathException e) {
+                if (journal == null || journal.skip(root) == 0) {
+                    engine.stats().failed();
+                    writer.write(new byte[engine.length()], file);
+                }
+            } catch (IOException e) {
+                System.out.println("Unable to write to output file, " + e.getMessage());
+                continue;
+            }
+            if (journal != null) {
+                journal.rootDone(writer, root);
+            }
+        }
+    }
+
+    private static void walkUnordered(BufferedReader reader, OutputSink writer, int threads, HashEngine engine, HashCache cache) throws IOException {
+        DirectoryWalker walker = new DirectoryWalker(cache != null);
+        DirectoryWalker.FileHandler handler = new DirectoryWalker.FileHandler() {
+            @Override
+            public void file(Path path, BasicFileAttributes attrs) throws IOException {
+                byte[] digest = getHash(engine, path, attrs, cache, new byte[engine.length()]);
+                synchronized (writer) {
+                    writer.write(digest, path);
+                }
+            }
+
+            @Override
+            public void fileFailed(Path path, IOException e) throws IOException {
+                engine.stats().failed();
+                synchronized (writer) {
+                    writer.write(new byte[engine.length()], path);
+                }
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            String file;
+            while ((file = reader.readLine()) != null) {
+                try {
+                    walker.walk(Paths.get(file), handler, pool);
+                } catch (InvalidPathException e) {
+                    engine.stats().failed();
+                    synchronized (writer) {
+                        writer.write(new byte[engine.length()], file);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Unable to walk " + file + ", " + e.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void walkOrdered(BufferedReader reader, OrderedWalk ordered, WalkJournal journal) throws IOException {
+        ordered.journal(journal);
+        try (OrderedWalk parallel = ordered) {
+            String file;
+            for (int root = 0; (file = reader.readLine()) != null; root++) {
+                if (journal != null && journal.isDone(root)) {
+                    continue;
+                }
+                long skip = journal == null ? 0 : journal.skip(root);
+                try {
+                    parallel.walk(Paths.get(file), root, skip);
+                } catch (InvalidPathException e) {
+                    parallel.failed(file, root, skip);
+                } catch (IOException e) {
+                    System.out.println("Unable to walk " + file + ", " + e.getMessage());
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Walk was interrupted, " + e.getMessage());
+        }
+    }
+
+    static byte[] getHash(HashEngine engine, Path path, BasicFileAttributes attrs, HashCache cache, byte[] digest) {
+        try {
+            if (cache != null) {
+                return cache.getHash(path, attrs);
+            }
+            engine.hash(path, digest, 0);
+        } catch (IOException | SecurityException e) {
+            engine.stats().failed();
+            Arrays.fill(digest, (byte) 0);
+        }
+        return digest;
+    }
+
+    public static long getHash(Path path) {
+        Fnv32Hasher hasher = new Fnv32Hasher();
+        try {
+            HashEngine.read(path, hasher);
         } catch (IOException | SecurityException e) {
-            hash = 0;
+            return 0;
         }
-        return hash;
+        return hasher.value() & 0xffffffffL;
     }
 }
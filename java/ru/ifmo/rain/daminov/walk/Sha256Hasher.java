@@ -0,0 +1,45 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 through {@link MessageDigest}.
+ */
+class Sha256Hasher implements Hasher {
+    private final MessageDigest digest;
+
+    Sha256Hasher() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    @Override
+    public int length() {
+        return 32;
+    }
+
+    @Override
+    public void reset() {
+        digest.reset();
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        digest.update(buffer);
+    }
+
+    @Override
+    public void digest(byte[] out, int offset) {
+        try {
+            digest.digest(out, offset, length());
+        } catch (DigestException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Hashes every file on its own thread with blocking reads, at most <tt>maxOpen</tt> at a time.
+ * Threads are virtual when the runtime supports them and pooled platform threads otherwise.
+ * Buffers and hashers are pooled rather than thread-local, since virtual threads are never reused.
+ */
+class VirtualThreadWalk extends OrderedWalk {
+    private final ExecutorService threads;
+    private final Semaphore permits;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final Queue<Hasher> hashers = new ConcurrentLinkedQueue<>();
+
+    VirtualThreadWalk(OutputSink writer, int maxOpen, int capacity, HashEngine engine, HashCache cache) {
+        super(writer, capacity, engine, cache);
+        threads = threadPerTask();
+        permits = new Semaphore(maxOpen);
+        for (int i = 0; i < maxOpen; i++) {
+            buffers.add(ByteBuffer.allocateDirect(HashEngine.CHUNK));
+        }
+    }
+
+    private static ExecutorService threadPerTask() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    @Override
+    Future<byte[]> hash(Path path, BasicFileAttributes attrs) throws InterruptedException {
+        permits.acquire();
+        try {
+            return threads.submit(() -> {
+                try {
+                    return read(path, attrs);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private byte[] read(Path path, BasicFileAttributes attrs) {
+        byte[] digest = new byte[engine.length()];
+        ByteBuffer buffer = buffers.poll();
+        Hasher hasher = hashers.poll();
+        if (hasher == null) {
+            hasher = engine.newHasher();
+        }
+        try {
+            HashCache.Record record = cache == null ? null : cache.lookup(path, attrs);
+            if (record != null && record.hash != null) {
+                return record.hash;
+            }
+            hasher.reset();
+            engine.digest(path, hasher, HashEngine.read(path, hasher, buffer), digest, 0);
+            if (record != null) {
+                cache.store(record, digest);
+            }
+        } catch (IOException | SecurityException e) {
+            engine.stats().failed();
+            return new byte[engine.length()];
+        } finally {
+            buffers.add(buffer);
+            hashers.add(hasher);
+        }
+        return digest;
+    }
+
+    @Override
+    void shutdown() {
+        threads.shutdownNow();
+    }
+}
@@ -0,0 +1,301 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmarks of the walk package: hashing throughput by file size and algorithm, traversal of many small files,
+ * output formatting, and reading with cold and warm page cache. Every benchmark runs warmup iterations
+ * and then measured ones; results are written as a JSON array so runs of different releases can be compared.
+ * <p>
+ * Usage: <tt>WalkBenchmark work-dir result.json [--max-size bytes] [--files n] [--warmup n] [--iterations n]</tt>.
+ * Cold cache runs drop the page cache through <tt>/proc/sys/vm/drop_caches</tt> and are skipped
+ * when that is not permitted.
+ */
+public class WalkBenchmark {
+    private static final long[] SIZES = {0, 1 << 10, 1 << 16, 1 << 20, 1 << 26, 1 << 30};
+
+    private final Path dir;
+    private final long maxSize;
+    private final int files;
+    private final int warmup;
+    private final int iterations;
+    private final List<String> results = new ArrayList<>();
+
+    private WalkBenchmark(Path dir, long maxSize, int files, int warmup, int iterations) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+        this.files = files;
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    private static final String USAGE = "Usage: WalkBenchmark work-dir result.json [--max-size bytes] [--files n] [--warmup n] [--iterations n]";
+
+    public static void main(String[] args) {
+        if (args == null || args.length < 2 || args.length % 2 != 0 || args[0] == null || args[1] == null) {
+            System.out.println(USAGE);
+            return;
+        }
+        long maxSize = 1 << 30;
+        int files = 100_000;
+        int warmup = 3;
+        int iterations = 5;
+        try {
+            for (int i = 2; i < args.length; i += 2) {
+                String name = args[i];
+                if (name == null) {
+                    throw new IllegalArgumentException("null option");
+                }
+                String value = args[i + 1];
+                if (value == null) {
+                    throw new IllegalArgumentException("expected value after " + name);
+                }
+                switch (name) {
+                    case "--max-size":
+                        maxSize = number(name, value, 1, Long.MAX_VALUE);
+                        break;
+                    case "--files":
+                        files = (int) number(name, value, 1, Integer.MAX_VALUE);
+                        break;
+                    case "--warmup":
+                        warmup = (int) number(name, value, 0, Integer.MAX_VALUE);
+                        break;
+                    case "--iterations":
+                        iterations = (int) number(name, value, 1, Integer.MAX_VALUE);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + name);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid options, " + e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
+        try {
+            WalkBenchmark benchmark = new WalkBenchmark(Paths.get(args[0]), maxSize, files, warmup, iterations);
+            benchmark.run();
+            benchmark.write(Paths.get(args[1]));
+        } catch (IOException e) {
+            System.out.println("Benchmark failed, " + e.getMessage());
+        } catch (InvalidPathException e) {
+            System.out.println("Invalid path, " + e.getMessage());
+        }
+    }
+
+    private static long number(String name, String value, long min, long max) {
+        long res;
+        try {
+            res = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " expects integer, found " + value);
+        }
+        if (res < min || res > max) {
+            throw new IllegalArgumentException(name + " expects value in [" + min + ", " + max + "], found " + value);
+        }
+        return res;
+    }
+
+    private interface Body {
+        /**
+         * Runs one iteration and returns the number of processed units.
+         */
+        long run() throws IOException;
+    }
+
+    private void run() throws IOException {
+        Files.createDirectories(dir);
+        for (long size : SIZES) {
+            if (size > maxSize) {
+                continue;
+            }
+            Path file = createFile(dir.resolve("hash-" + size), size);
+            for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+                HashEngine engine = new HashEngine(algorithm);
+                byte[] digest = new byte[engine.length()];
+                // empty files measure the per-file overhead, so they are counted in files
+                measure("hash", "algorithm=" + algorithm + ",size=" + size, size == 0 ? "files/s" : "MB/s", size == 0 ? 1 : 1e6, false, () -> {
+                    engine.hash(file, digest, 0);
+                    return size == 0 ? 1 : size;
+                });
+            }
+            if (size > 0) {
+                HashEngine engine = HashEngine.FNV32;
+                byte[] digest = new byte[engine.length()];
+                measure("hashCold", "algorithm=FNV32,size=" + size, "MB/s", 1e6, true, () -> {
+                    engine.hash(file, digest, 0);
+                    return size;
+                });
+            }
+            Files.delete(file);
+        }
+
+        Path tree = createTree(dir.resolve("tree"), files);
+        DirectoryWalker walker = new DirectoryWalker(false);
+        measure("traverse", "files=" + files, "files/s", 1, false, () -> {
+            long[] count = new long[1];
+            walker.walk(tree, handler(path -> count[0]++));
+            return count[0];
+        });
+        measure("traverseAndHash", "files=" + files, "files/s", 1, false, () -> {
+            long[] count = new long[1];
+            byte[] digest = new byte[4];
+            walker.walk(tree, handler(path -> {
+                HashEngine.FNV32.hash(path, digest, 0);
+                count[0]++;
+            }));
+            return count[0];
+        });
+        measure("traverseAndHashCold", "files=" + files, "files/s", 1, true, () -> {
+            long[] count = new long[1];
+            byte[] digest = new byte[4];
+            walker.walk(tree, handler(path -> {
+                HashEngine.FNV32.hash(path, digest, 0);
+                count[0]++;
+            }));
+            return count[0];
+        });
+
+        List<Path> paths = new ArrayList<>();
+        walker.walk(tree, handler(paths::add));
+        byte[] digest = {0x12, 0x34, (byte) 0xab, (byte) 0xcd};
+        measure("formatSink", "records=" + paths.size(), "records/s", 1, false, () -> {
+            try (OutputSink sink = new OutputSink(FileChannel.open(dir.resolve("format.out"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+                for (Path path : paths) {
+                    sink.write(digest, path);
+                }
+            }
+            return paths.size();
+        });
+        measure("formatString", "records=" + paths.size(), "records/s", 1, false, () -> {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(dir.resolve("format.out"), StandardCharsets.UTF_8))) {
+                for (Path path : paths) {
+                    writer.println(String.format("%08x", 0x1234abcd) + " " + path);
+                }
+            }
+            return paths.size();
+        });
+        Files.deleteIfExists(dir.resolve("format.out"));
+        deleteTree(tree);
+    }
+
+    private interface PathAction {
+        void accept(Path path) throws IOException;
+    }
+
+    private static DirectoryWalker.FileHandler handler(PathAction action) {
+        return new DirectoryWalker.FileHandler() {
+            @Override
+            public void file(Path path, BasicFileAttributes attrs) throws IOException {
+                action.accept(path);
+            }
+
+            @Override
+            public void fileFailed(Path path, IOException e) throws IOException {
+                throw e;
+            }
+        };
+    }
+
+    private void measure(String name, String params, String unit, double scale, boolean cold, Body body) throws IOException {
+        if (cold && !dropCaches()) {
+            results.add(String.format(Locale.ROOT, "{\"benchmark\":\"%s\",\"params\":\"%s\",\"skipped\":\"cannot drop page cache\"}", name, params));
+            return;
+        }
+        for (int i = 0; i < warmup; i++) {
+            body.run();
+        }
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            if (cold) {
+                dropCaches();
+            }
+            long start = System.nanoTime();
+            long units = body.run();
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            scores[i] = units / scale / (elapsed / 1e9);
+        }
+        double mean = 0;
+        for (double score : scores) {
+            mean += score / scores.length;
+        }
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean) / Math.max(1, scores.length - 1);
+        }
+        String result = String.format(Locale.ROOT,
+                "{\"benchmark\":\"%s\",\"params\":\"%s\",\"unit\":\"%s\",\"iterations\":%d,\"score\":%.3f,\"stddev\":%.3f}",
+                name, params, unit, iterations, mean, Math.sqrt(variance));
+        System.out.println(result);
+        results.add(result);
+    }
+
+    private static boolean dropCaches() {
+        try {
+            Files.write(Paths.get("/proc/sys/vm/drop_caches"), "3".getBytes(StandardCharsets.US_ASCII));
+            return true;
+        } catch (IOException | SecurityException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private void write(Path output) throws IOException {
+        Files.write(output, ("[\n  " + String.join(",\n  ", results) + "\n]\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Path createFile(Path file, long size) throws IOException {
+        Random random = new Random(size);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long written = 0; written < size; ) {
+                random.nextBytes(buffer.array());
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), size - written));
+                written += channel.write(buffer);
+            }
+        }
+        return file;
+    }
+
+    private static Path createTree(Path root, int files) throws IOException {
+        Random random = new Random(files);
+        byte[] data = new byte[256];
+        for (int i = 0; i < files; i++) {
+            Path directory = root.resolve(Integer.toString(i / 10000)).resolve(Integer.toString(i / 100 % 100));
+            if (i % 100 == 0) {
+                Files.createDirectories(directory);
+            }
+            random.nextBytes(data);
+            Files.write(directory.resolve("f" + i), data);
+        }
+        return root;
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
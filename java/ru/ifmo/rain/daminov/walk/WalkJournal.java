@@ -0,0 +1,176 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkpoint journal of a walk. The first line <tt>#input\toutput\talgorithm</tt> names the walk, with absolute
+ * paths, and a walk is resumed only with the same ones. Every checkpoint is a line <tt>root files offset</tt>: roots before
+ * <tt>root</tt> are complete, the first <tt>files</tt> records of <tt>root</tt> are written, and the output
+ * is durable up to <tt>offset</tt>. A resumed walk truncates the output to the offset of the last checkpoint,
+ * skips finished roots and the finished part of the current one, and appends the rest.
+ * Resuming relies on the traversal order of unchanged directories being the same.
+ */
+class WalkJournal implements AutoCloseable {
+    private static final long INTERVAL_RECORDS = 10000;
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int startRoot;
+    private final long skipFiles;
+    private final long outputOffset;
+    private long unsaved;
+    private long lastSave = System.nanoTime();
+
+    private WalkJournal(Path file, FileChannel channel, int startRoot, long skipFiles, long outputOffset) {
+        this.file = file;
+        this.channel = channel;
+        this.startRoot = startRoot;
+        this.skipFiles = skipFiles;
+        this.outputOffset = outputOffset;
+    }
+
+    static WalkJournal open(Path file, boolean resume, Path input, Path output, HashAlgorithm algorithm) throws IOException {
+        String header = "#" + input.toAbsolutePath().normalize() + "\t" + output.toAbsolutePath().normalize() + "\t" + algorithm;
+        int root = 0;
+        long files = 0;
+        long offset = 0;
+        boolean fresh = true;
+        if (resume && Files.exists(file)) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (!lines.isEmpty()) {
+                if (!lines.get(0).equals(header)) {
+                    throw new IOException(file + " was written for another input, output or algorithm");
+                }
+                fresh = false;
+            }
+            // the last line may be torn by a crash, so the last complete checkpoint is used
+            for (int i = lines.size() - 1; i >= 1; i--) {
+                String[] parts = lines.get(i).split(" ");
+                if (parts.length == 3) {
+                    try {
+                        root = Integer.parseInt(parts[0]);
+                        files = Long.parseLong(parts[1]);
+                        offset = Long.parseLong(parts[2]);
+                        break;
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                fresh ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND);
+        WalkJournal journal = new WalkJournal(file, channel, root, files, offset);
+        if (fresh) {
+            try {
+                journal.append(header);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Opens the output, truncated to the last checkpoint.
+     */
+    FileChannel openOutput(String name) throws IOException {
+        FileChannel output = FileChannel.open(file.getFileSystem().getPath(name), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (output.size() < outputOffset) {
+                throw new IOException("output is shorter than the checkpoint at " + outputOffset);
+            }
+            output.truncate(outputOffset);
+            output.position(outputOffset);
+            return output;
+        } catch (IOException e) {
+            output.close();
+            throw e;
+        }
+    }
+
+    boolean isDone(int root) {
+        return root < startRoot;
+    }
+
+    long skip(int root) {
+        return root == startRoot ? skipFiles : 0;
+    }
+
+    /**
+     * Notes that <tt>files</tt> records of the root are written, saving a checkpoint from time to time.
+     */
+    void written(OutputSink sink, int root, long files) throws IOException {
+        if (++unsaved >= INTERVAL_RECORDS || System.nanoTime() - lastSave >= INTERVAL_NANOS) {
+            save(sink, root, files);
+        }
+    }
+
+    void rootDone(OutputSink sink, int root) throws IOException {
+        save(sink, root + 1, 0);
+    }
+
+    private void save(OutputSink sink, int root, long files) throws IOException {
+        long offset = sink.force();
+        append(root + " " + files + " " + offset);
+        unsaved = 0;
+        lastSave = System.nanoTime();
+    }
+
+    private void append(String line) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Wraps a handler of a sequential walk: skips the finished records of the root and notes written ones.
+     */
+    DirectoryWalker.FileHandler track(DirectoryWalker.FileHandler handler, OutputSink sink, int root) {
+        long skip = skip(root);
+        return new DirectoryWalker.FileHandler() {
+            private long files;
+
+            @Override
+            public void file(Path path, BasicFileAttributes attrs) throws IOException {
+                if (files++ >= skip) {
+                    handler.file(path, attrs);
+                    written(sink, root, files);
+                }
+            }
+
+            @Override
+            public void fileFailed(Path path, IOException e) throws IOException {
+                if (files++ >= skip) {
+                    handler.fileFailed(path, e);
+                    written(sink, root, files);
+                }
+            }
+        };
+    }
+
+    /**
+     * Removes the journal after the walk has finished.
+     */
+    void complete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,123 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+class WalkOptions {
+    private static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    int threads = 0;
+    int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    int inFlight = 0;
+    int maxOpen = 0;
+    boolean unordered = false;
+    Path cache = null;
+    HashAlgorithm algorithm = HashAlgorithm.FNV32;
+    Path chunks = null;
+    int topChunks = 10;
+    Path journal = null;
+    boolean resume = false;
+    int statsPeriod = 0;
+    boolean jmx = false;
+
+    static WalkOptions parse(String[] args, int from) {
+        WalkOptions options = new WalkOptions();
+        for (int i = from; i < args.length; i++) {
+            String name = args[i];
+            if (name == null) {
+                throw new IllegalArgumentException("null option");
+            }
+            switch (name) {
+                case "--threads":
+                    options.threads = positive(name, value(args, ++i, name));
+                    break;
+                case "--async":
+                    options.inFlight = positive(name, value(args, ++i, name));
+                    break;
+                case "--virtual":
+                    options.maxOpen = positive(name, value(args, ++i, name));
+                    break;
+                case "--unordered":
+                    options.unordered = true;
+                    break;
+                case "--queue":
+                    options.queueCapacity = positive(name, value(args, ++i, name));
+                    break;
+                case "--cache":
+                    options.cache = path(name, value(args, ++i, name));
+                    break;
+                case "--hash":
+                    options.algorithm = HashAlgorithm.forName(value(args, ++i, name));
+                    break;
+                case "--chunks":
+                    options.chunks = path(name, value(args, ++i, name));
+                    break;
+                case "--top":
+                    options.topChunks = positive(name, value(args, ++i, name));
+                    break;
+                case "--journal":
+                    options.journal = path(name, value(args, ++i, name));
+                    break;
+                case "--resume":
+                    options.resume = true;
+                    break;
+                case "--stats":
+                    options.statsPeriod = positive(name, value(args, ++i, name));
+                    break;
+                case "--jmx":
+                    options.jmx = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + name);
+            }
+        }
+        if (options.inFlight > 0 && options.maxOpen > 0) {
+            throw new IllegalArgumentException("--async cannot be combined with --virtual");
+        }
+        if (options.unordered && (options.threads == 0 || options.inFlight > 0 || options.maxOpen > 0)) {
+            throw new IllegalArgumentException("--unordered applies to --threads only");
+        }
+        if (options.chunks != null && options.cache != null) {
+            throw new IllegalArgumentException("--chunks cannot be combined with --cache");
+        }
+        if (options.journal != null && options.unordered) {
+            throw new IllegalArgumentException("--journal cannot be combined with --unordered");
+        }
+        if (options.resume && options.journal == null) {
+            throw new IllegalArgumentException("--resume requires --journal");
+        }
+        if (options.resume && options.chunks != null) {
+            throw new IllegalArgumentException("--resume cannot be combined with --chunks");
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int i, String name) {
+        if (i >= args.length || args[i] == null) {
+            throw new IllegalArgumentException("expected value after " + name);
+        }
+        return args[i];
+    }
+
+    private static Path path(String name, String value) {
+        try {
+            return Paths.get(value);
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException(name + " expects path, " + e.getMessage());
+        }
+    }
+
+    private static int positive(String name, String value) {
+        int res;
+        try {
+            res = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " expects integer, found " + value);
+        }
+        if (res <= 0) {
+            throw new IllegalArgumentException(name + " expects positive value, found " + value);
+        }
+        return res;
+    }
+}
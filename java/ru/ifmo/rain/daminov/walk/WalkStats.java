@@ -0,0 +1,151 @@
+package ru.ifmo.rain.daminov.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Live counters of a walk. Counters are always maintained; {@link #start} samples rates periodically,
+ * optionally printing a stats line and exposing the counters through JMX.
+ */
+class WalkStats implements WalkStatsMXBean, AutoCloseable {
+    private static final String NAME = "ru.ifmo.rain.daminov.walk:type=WalkStats,id=";
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile IntSupplier queue = () -> 0;
+
+    private long sampled = System.nanoTime();
+    private long sampledFiles;
+    private long sampledBytes;
+    private volatile double filesRate;
+    private volatile double bytesRate;
+
+    private ScheduledExecutorService timer;
+    private ObjectName name;
+    private PrintStream out;
+
+    void hashed(long size) {
+        files.increment();
+        bytes.add(size);
+    }
+
+    void cached() {
+        files.increment();
+        cached.increment();
+    }
+
+    void failed() {
+        errors.increment();
+    }
+
+    /**
+     * Sets the source of the number of results waiting to be written.
+     */
+    void queue(IntSupplier queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Starts sampling every <tt>period</tt> seconds, printing a stats line to <tt>out</tt> if it is not null.
+     * Sampling goes on even if the registration in JMX fails, every walk is registered with its own id.
+     */
+    void start(int period, PrintStream out, boolean jmx) throws JMException {
+        this.out = out;
+        timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "walk-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::sample, period, period, TimeUnit.SECONDS);
+        if (jmx) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName candidate = new ObjectName(NAME + IDS.incrementAndGet());
+            server.registerMBean(this, candidate);
+            name = candidate;
+        }
+    }
+
+    private synchronized void sample() {
+        long now = System.nanoTime();
+        long currentFiles = files.sum();
+        long currentBytes = bytes.sum();
+        double seconds = (now - sampled) / 1e9;
+        filesRate = (currentFiles - sampledFiles) / seconds;
+        bytesRate = (currentBytes - sampledBytes) / seconds;
+        sampled = now;
+        sampledFiles = currentFiles;
+        sampledBytes = currentBytes;
+        if (out != null) {
+            out.println(line());
+        }
+    }
+
+    String line() {
+        return String.format(Locale.ROOT, "Walk: %d files (%d cached), %.1f MB, %.1f MB/s, %.0f files/s, %d errors, queue %d",
+                getFiles(), getCachedFiles(), getBytes() / 1e6, getBytesPerSecond() / 1e6, getFilesPerSecond(),
+                getErrors(), getQueueDepth());
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getCachedFiles() {
+        return cached.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue.getAsInt();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return bytesRate;
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return filesRate;
+    }
+
+    /**
+     * Stops sampling and unregisters the bean; the last sample covers the tail of the walk.
+     */
+    @Override
+    public void close() throws JMException {
+        if (timer == null) {
+            return;
+        }
+        timer.shutdownNow();
+        sample();
+        if (name != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.ifmo.rain.daminov.walk;
+
+/**
+ * Progress of a running walk, registered as <tt>ru.ifmo.rain.daminov.walk:type=WalkStats,id=n</tt>.
+ * Rates are measured over the last sampling period.
+ */
+public interface WalkStatsMXBean {
+    long getFiles();
+
+    long getCachedFiles();
+
+    long getBytes();
+
+    long getErrors();
+
+    int getQueueDepth();
+
+    double getBytesPerSecond();
+
+    double getFilesPerSecond();
+}
@@ -0,0 +1,116 @@
+package ru.ifmo.rain.daminov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * xxHash64 with seed 0. Input is consumed in 32-byte stripes, a partial stripe is kept
+ * in {@link #tail} until the next update.
+ */
+class XxHash64Hasher implements Hasher {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private final ByteBuffer tail = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long total;
+
+    XxHash64Hasher() {
+        reset();
+    }
+
+    @Override
+    public int length() {
+        return 8;
+    }
+
+    @Override
+    public void reset() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0;
+        v4 = -PRIME1;
+        total = 0;
+        tail.clear();
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        total += buffer.remaining();
+        if (tail.position() > 0) {
+            while (tail.hasRemaining() && buffer.hasRemaining()) {
+                tail.put(buffer.get());
+            }
+            if (tail.hasRemaining()) {
+                return;
+            }
+            stripe(tail, 0);
+            tail.clear();
+        }
+        ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int limit = data.remaining() - STRIPE;
+        int i = 0;
+        for (; i <= limit; i += STRIPE) {
+            stripe(data, i);
+        }
+        buffer.position(buffer.position() + i);
+        tail.put(buffer);
+    }
+
+    private void stripe(ByteBuffer data, int at) {
+        v1 = round(v1, data.getLong(at));
+        v2 = round(v2, data.getLong(at + 8));
+        v3 = round(v3, data.getLong(at + 16));
+        v4 = round(v4, data.getLong(at + 24));
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long merge(long acc, long value) {
+        return (acc ^ round(0, value)) * PRIME1 + PRIME4;
+    }
+
+    @Override
+    public void digest(byte[] out, int offset) {
+        long h;
+        if (total >= STRIPE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = PRIME5;
+        }
+        h += total;
+
+        int length = tail.position();
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            h = Long.rotateLeft(h ^ round(0, tail.getLong(i)), 27) * PRIME1 + PRIME4;
+        }
+        if (i + 4 <= length) {
+            h = Long.rotateLeft(h ^ (tail.getInt(i) & 0xffffffffL) * PRIME1, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for (; i < length; i++) {
+            h = Long.rotateLeft(h ^ (tail.get(i) & 0xff) * PRIME5, 11) * PRIME1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        HashAlgorithm.putLong(h, out, offset, 8);
+    }
+}